@@ -0,0 +1,101 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sqcb.unpacker.io.CountingInputStream;
+import sqcb.unpacker.io.LimitedInputStream;
+
+/**
+ * Measures per-byte and bulk reads through the stream wrappers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+
+    private static final int SIZE = 1 << 20;
+
+    @Param({ "1", "4096", "65536" })
+    public int blockSize;
+
+    private byte[] data;
+
+    private byte[] block;
+
+    @Setup
+    public void setUp() {
+        data = new byte[SIZE];
+        new Random(SIZE).nextBytes(data);
+        block = new byte[blockSize];
+    }
+
+    @Benchmark
+    public long counting() throws IOException {
+        return drain(new CountingInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Benchmark
+    public long limited() throws IOException {
+        return drain(new LimitedInputStream(new ByteArrayInputStream(data), SIZE));
+    }
+
+    @Benchmark
+    public long limitedCounting() throws IOException {
+        return drain(new LimitedInputStream(new CountingInputStream(new ByteArrayInputStream(data)), SIZE));
+    }
+
+    private long drain(InputStream stream) throws IOException {
+        long sum = 0;
+        if (blockSize == 1) {
+            for (int b; (b = stream.read()) != -1;) {
+                sum += b;
+            }
+        } else {
+            for (int len; (len = stream.read(block)) != -1;) {
+                sum += len;
+            }
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,88 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Creates synthetic SQC banks for benchmarks.
+ */
+final class SyntheticBanks {
+
+    private static final String HEADER = "SQCB";
+
+    private static final String VERSION = "1.00";
+
+    private SyntheticBanks() {
+        super();
+    }
+
+    /**
+     * Creates a SQC bank containing the specified number of files of the
+     * specified size filled with pseudo-random bytes.
+     *
+     * @param files    the number of files
+     * @param fileSize the size of each file
+     * @return the SQC bank bytes
+     */
+    static byte[] bank(int files, int fileSize) {
+        String[] names = new String[files];
+        int offset = 8 + 8 + 4;
+        for (int i = 0; i < files; i++) {
+            names[i] = String.format("synthetic_track_%06d.sqc", i);
+            offset += 2 * (names[i].length() + 1) + 4 + 4;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(offset + files * fileSize);
+        writeChars(out, HEADER);
+        writeChars(out, VERSION);
+        writeInt(out, files);
+        for (String name : names) {
+            writeChars(out, name);
+            writeChars(out, "\0");
+            writeInt(out, offset);
+            writeInt(out, fileSize);
+            offset += fileSize;
+        }
+        byte[] content = new byte[fileSize];
+        Random random = new Random(files);
+        for (int i = 0; i < files; i++) {
+            random.nextBytes(content);
+            out.write(content, 0, content.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeChars(ByteArrayOutputStream out, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_16LE);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+}
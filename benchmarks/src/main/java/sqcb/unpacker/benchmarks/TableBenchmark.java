@@ -0,0 +1,114 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sqcb.unpacker.SqcBank;
+import sqcb.unpacker.SqcChannelBank;
+import sqcb.unpacker.SqcRecord;
+import sqcb.unpacker.SqcTable;
+
+/**
+ * Measures parsing of the table of records for small and very large tables
+ * and lookups of records by name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int records;
+
+    private byte[] bank;
+
+    private Path file;
+
+    private SqcTable table;
+
+    private String lastName;
+
+    @Setup
+    public void setUp() throws IOException {
+        bank = SyntheticBanks.bank(records, 0);
+        file = Files.createTempFile("table-benchmark", ".sqcb");
+        Files.write(file, bank);
+        try (SqcBank sqcBank = new SqcBank(new ByteArrayInputStream(bank))) {
+            table = sqcBank.getTable();
+        }
+        lastName = table.getName(table.size() - 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<SqcRecord> stream() throws IOException {
+        try (SqcBank sqcBank = new SqcBank(new ByteArrayInputStream(bank))) {
+            return sqcBank.getRecords();
+        }
+    }
+
+    @Benchmark
+    public List<SqcRecord> channel() throws IOException {
+        try (SqcChannelBank sqcBank = new SqcChannelBank(file)) {
+            return sqcBank.getRecords();
+        }
+    }
+
+    @Benchmark
+    public SqcTable table() throws IOException {
+        try (SqcChannelBank sqcBank = new SqcChannelBank(file)) {
+            return sqcBank.getTable();
+        }
+    }
+
+    @Benchmark
+    public int lookup() {
+        return table.indexOf(lastName);
+    }
+
+}
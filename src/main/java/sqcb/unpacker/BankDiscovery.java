@@ -0,0 +1,231 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import sqcb.unpacker.io.ExtensionPredicate;
+
+/**
+ * Discovers SQCB files in a directory tree and hands them over as soon as they
+ * are found, so that unpacking starts while the tree is still being walked.
+ * <p>
+ * Each directory is listed by {@link Files#walkFileTree} one level deep and its
+ * subdirectories are walked concurrently on separate threads. The attributes
+ * read while listing tell regular files and their sizes, so the files are not
+ * queried again. Found files are taken in the order they were found, or the
+ * largest first among the files found so far.
+ */
+final class BankDiscovery implements Closeable {
+
+    /**
+     * Accepts the found SQCB files.
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        /**
+         * Accepts the found SQCB file.
+         *
+         * @param file the SQCB file
+         * @param size the size of the file
+         * @throws IOException if an I/O error occurs
+         */
+        void accept(Path file, long size) throws IOException;
+
+    }
+
+    private static final Found END = new Found(null, -1);
+
+    private final ExecutorService executor;
+
+    private final BlockingQueue<Found> queue;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Object failureLock = new Object();
+
+    private IOException failure;
+
+    /**
+     * Constructs a new discovery walking directories on the specified number of
+     * threads.
+     *
+     * @param threads      the number of threads
+     * @param largestFirst {@code true} to take the largest found files first
+     */
+    BankDiscovery(int threads, boolean largestFirst) {
+        super();
+        this.executor = ParallelTasks.newExecutor(threads);
+        this.queue = largestFirst
+                ? new PriorityBlockingQueue<>(64, Comparator.comparingLong((Found found) -> found.size).reversed())
+                : new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Walks the specified directory and its subdirectories on the calling thread
+     * and passes the SQCB files to the sink in the order they are found.
+     *
+     * @param directory the directory
+     * @param sink      the sink of the SQCB files
+     * @throws IOException if an I/O error occurs or the sink fails
+     */
+    static void walk(Path directory, Sink sink) throws IOException {
+        Predicate<Path> predicate = new ExtensionPredicate(Unpacker.SQCB_EXTENSION);
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (predicate.test(file) && isRegularFile(file, attrs)) {
+                    sink.accept(file, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+    /**
+     * Starts walking the specified directory and its subdirectories.
+     *
+     * @param directory the directory
+     */
+    void start(Path directory) {
+        pending.incrementAndGet();
+        executor.execute(() -> walkDirectory(directory));
+    }
+
+    /**
+     * Returns the next found SQCB file, waiting until one is found or the walk
+     * is finished.
+     *
+     * @return the SQCB file or {@code null} if the walk is finished and all
+     *         found files were taken
+     * @throws InterruptedIOException if the waiting is interrupted
+     */
+    Path take() throws InterruptedIOException {
+        Found found;
+        try {
+            found = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Discovery interrupted");
+        }
+        if (found == END) {
+            // leave the end for the other takers
+            queue.add(END);
+            return null;
+        }
+        return found.file;
+    }
+
+    /**
+     * Throws the failure of the walk, if any. The failures of other
+     * directories are suppressed by the first one.
+     *
+     * @throws IOException if a directory could not be walked
+     */
+    void checkFailure() throws IOException {
+        synchronized (failureLock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void walkDirectory(Path directory) {
+        Predicate<Path> predicate = new ExtensionPredicate(Unpacker.SQCB_EXTENSION);
+        try {
+            Files.walkFileTree(directory, Collections.emptySet(), 1, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isDirectory()) {
+                        start(file);
+                    } else if (predicate.test(file) && isRegularFile(file, attrs)) {
+                        queue.add(new Found(file, attrs.size()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+            });
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(e));
+        } finally {
+            if (pending.decrementAndGet() == 0) {
+                queue.add(END);
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (failureLock) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private static boolean isRegularFile(Path file, BasicFileAttributes attrs) {
+        // the attributes of a symbolic link describe the link, not its target
+        return attrs.isRegularFile() || attrs.isSymbolicLink() && Files.isRegularFile(file);
+    }
+
+    private static final class Found {
+
+        private final Path file;
+
+        private final long size;
+
+        Found(Path file, long size) {
+            super();
+            this.file = file;
+            this.size = size;
+        }
+
+    }
+
+}
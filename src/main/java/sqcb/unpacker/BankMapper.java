@@ -0,0 +1,68 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Maps regions of a SQCB file into memory.
+ * <p>
+ * This implementation maps each region separately and leaves the unmapping to
+ * the garbage collector. The multi-release JAR replaces it on Java 22 and later
+ * with an implementation mapping the whole file once as a memory segment.
+ */
+final class BankMapper implements Closeable {
+
+    private final FileChannel channel;
+
+    /**
+     * Constructs a new mapper of the specified file channel.
+     *
+     * @param channel the file channel
+     */
+    BankMapper(FileChannel channel) {
+        super();
+        this.channel = channel;
+    }
+
+    /**
+     * Maps the specified region of the file.
+     *
+     * @param offset the offset of the region
+     * @param size   the size of the region
+     * @return the read-only buffer with the region content
+     * @throws IOException if an I/O error occurs
+     */
+    ByteBuffer map(long offset, long size) throws IOException {
+        return channel.map(MapMode.READ_ONLY, offset, size);
+    }
+
+    @Override
+    public void close() {
+        // mapped buffers are released by the garbage collector
+    }
+
+}
@@ -0,0 +1,159 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CheckedInputStream;
+
+import sqcb.unpacker.io.Crc32c;
+
+/**
+ * Computes the checksums of the content of a SQC file recorded in manifests:
+ * the CRC-32C and optionally the SHA-256 digest.
+ * <p>
+ * The checksums are computed either from a stream wrapping the content while
+ * it is copied, so that the content is read only once, or from buffers of an
+ * unpacked file being verified. A wrapping stream does not support marks,
+ * since content read again after a reset would be checksummed twice.
+ *
+ * @see SqcManifest
+ */
+final class ContentChecksum {
+
+    private final Crc32c crc = new Crc32c();
+
+    private final MessageDigest digest;
+
+    /**
+     * Constructs a new checksum.
+     *
+     * @param sha256 {@code true} to compute the SHA-256 digest as well
+     */
+    ContentChecksum(boolean sha256) {
+        super();
+        this.digest = sha256 ? newSha256() : null;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the SQC file with a stream that updates this checksum with the
+     * content read through it.
+     *
+     * @param sqcFile the SQC file
+     * @return the SQC file with the checksummed stream
+     */
+    SqcFile wrap(SqcFile sqcFile) {
+        InputStream stream = new CheckedInputStream(sqcFile.getStream(), crc);
+        if (digest != null) {
+            stream = new DigestInputStream(stream, digest);
+        }
+        return new SqcFile(sqcFile, new UnmarkableInputStream(stream));
+    }
+
+    /**
+     * Updates this checksum with the remaining bytes of the specified buffer.
+     * Upon return, the position of the buffer is its limit.
+     *
+     * @param buffer the buffer
+     */
+    void update(ByteBuffer buffer) {
+        if (digest != null) {
+            digest.update(buffer.duplicate());
+        }
+        crc.update(buffer);
+    }
+
+    /**
+     * Returns the CRC-32C as eight hexadecimal digits.
+     *
+     * @return the CRC-32C
+     */
+    String getCrc32c() {
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * Returns the SHA-256 digest as hexadecimal digits. The digest is reset.
+     *
+     * @return the SHA-256 digest or {@code null} if it is not computed
+     */
+    String getSha256() {
+        if (digest == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the manifest entry of the specified record with the checksums of
+     * the content.
+     *
+     * @param record the record
+     * @return the manifest entry
+     */
+    SqcManifest.Entry toEntry(SqcRecord record) {
+        return new SqcManifest.Entry(record.getName(), record.getOffset(), record.getSize(), getCrc32c(),
+                getSha256());
+    }
+
+    private static final class UnmarkableInputStream extends FilterInputStream {
+
+        UnmarkableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            // not supported
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("Mark not supported");
+        }
+
+    }
+
+}
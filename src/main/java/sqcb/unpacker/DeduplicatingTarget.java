@@ -0,0 +1,222 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes unpacked SQC files into files and turns SQC files with the content of
+ * an earlier SQC file into hard links to the earlier file.
+ * <p>
+ * The SQC files are grouped by size, so only SQC files whose size was already
+ * written are hashed; the earlier file of that size is hashed from the disk
+ * once it has a rival. The content is identified by its size, CRC-32C and
+ * SHA-256 digest. If a SQC file is read from a file channel, its content is
+ * hashed before writing and a duplicate is not written at all. Otherwise, for
+ * example when checksums are recorded for the manifest, it is hashed while
+ * written and a duplicate is replaced by a link afterwards. If a link cannot
+ * be created, for example across file systems, the content stays written.
+ * <p>
+ * Existing destination files are deleted before writing, so that a file linked
+ * by an earlier run is never modified through its other links. The index of
+ * contents lasts as long as the target.
+ */
+public class DeduplicatingTarget extends DirectoryTarget {
+
+    private final Set<Long> sizes = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, Path> unhashed = new ConcurrentHashMap<>();
+
+    private final Map<String, Path> contents = new ConcurrentHashMap<>();
+
+    private final Map<Path, String> keys = new ConcurrentHashMap<>();
+
+    private final LongAdder linkedFiles = new LongAdder();
+
+    private final LongAdder linkedBytes = new LongAdder();
+
+    /**
+     * Constructs a new deduplicating target with the specified buffer size.
+     *
+     * @param bufferSize the buffer size
+     */
+    public DeduplicatingTarget(int bufferSize) {
+        super(bufferSize);
+    }
+
+    /**
+     * Constructs a new deduplicating target with the default buffer size.
+     *
+     * @see Unpacker#DEFAULT_BUFFER_SIZE
+     */
+    public DeduplicatingTarget() {
+        this(Unpacker.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the content of the specified SQC file or links the destination
+     * file to an earlier file with the same content.
+     * <p>
+     * An existing destination file is deleted first. The unpacker resolves
+     * destination files with {@link DirectoryTarget#resolve}, so it never
+     * passes a file outside of the destination directory.
+     *
+     * @param sqcFile  the SQC file
+     * @param destFile the destination path
+     * @return the number of bytes written, {@code 0} if the destination file
+     *         was linked without writing
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public long write(SqcFile sqcFile, Path destFile) throws IOException {
+        forget(destFile);
+        Files.deleteIfExists(destFile);
+        long size = sqcFile.getSize();
+        if (size == 0) {
+            return super.write(sqcFile, destFile);
+        }
+        if (sizes.add(size)) {
+            long bytes = super.write(sqcFile, destFile);
+            unhashed.put(size, destFile);
+            return bytes;
+        }
+        Path first = unhashed.remove(size);
+        if (first != null) {
+            index(first, size);
+        }
+        InputStream stream = sqcFile.getStream();
+        if (stream.markSupported()) {
+            ContentChecksum checksum = new ContentChecksum(true);
+            stream.mark(Integer.MAX_VALUE);
+            hash(stream, checksum);
+            String key = key(size, checksum);
+            Path original = contents.get(key);
+            if (original != null && link(original, destFile, size)) {
+                keys.put(destFile, key);
+                return 0;
+            }
+            stream.reset();
+            long bytes = super.write(sqcFile, destFile);
+            register(key, destFile);
+            return bytes;
+        }
+        ContentChecksum checksum = new ContentChecksum(true);
+        long bytes = super.write(checksum.wrap(sqcFile), destFile);
+        String key = key(size, checksum);
+        Path original = contents.putIfAbsent(key, destFile);
+        if (original == null || !link(original, destFile, size)) {
+            register(key, destFile);
+        } else {
+            keys.put(destFile, key);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of SQC files linked to earlier files.
+     *
+     * @return the number of linked files
+     */
+    public long getLinkedFiles() {
+        return linkedFiles.sum();
+    }
+
+    /**
+     * Returns the total size of SQC files linked to earlier files.
+     *
+     * @return the number of bytes not stored again
+     */
+    public long getLinkedBytes() {
+        return linkedBytes.sum();
+    }
+
+    private void forget(Path destFile) {
+        // the file is about to be replaced, so it no longer holds its content
+        String key = keys.remove(destFile);
+        if (key != null) {
+            contents.remove(key, destFile);
+        }
+        unhashed.values().remove(destFile);
+    }
+
+    private void register(String key, Path destFile) {
+        contents.putIfAbsent(key, destFile);
+        keys.put(destFile, key);
+    }
+
+    private void index(Path file, long size) throws IOException {
+        ContentChecksum checksum = new ContentChecksum(true);
+        ByteBuffer buffer = ByteBuffer.wrap(getBuffer());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+                buffer.flip();
+                checksum.update(buffer);
+            }
+        } catch (NoSuchFileException e) {
+            // removed meanwhile, nothing to link to
+            return;
+        }
+        register(key(size, checksum), file);
+    }
+
+    private void hash(InputStream stream, ContentChecksum checksum) throws IOException {
+        byte[] block = getBuffer();
+        for (int len; (len = stream.read(block)) != -1;) {
+            checksum.update(ByteBuffer.wrap(block, 0, len));
+        }
+    }
+
+    private boolean link(Path original, Path destFile, long size) throws IOException {
+        Path tempFile = destFile.resolveSibling(destFile.getFileName() + ".link");
+        try {
+            Files.deleteIfExists(tempFile);
+            Files.createLink(tempFile, original);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+        Files.move(tempFile, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        linkedFiles.increment();
+        linkedBytes.add(size);
+        return true;
+    }
+
+    private static String key(long size, ContentChecksum checksum) {
+        return size + "/" + checksum.getCrc32c() + "/" + checksum.getSha256();
+    }
+
+}
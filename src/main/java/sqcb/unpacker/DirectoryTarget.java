@@ -0,0 +1,356 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import sqcb.unpacker.io.FileChannelInputStream;
+
+/**
+ * Writes unpacked SQC files into files. This is the default target of the
+ * unpacker.
+ * <p>
+ * Each file is written through a file channel. Since the size of a SQC file is
+ * known up front, the file is extended to its final size before its content is
+ * written, so the file system learns the size once instead of growing the file
+ * write by write. If a SQC file is read from a file channel, its content is
+ * transferred to the destination file without copying it through a buffer.
+ * Otherwise, it is copied through a buffer reused by each thread, optionally a
+ * direct one.
+ * <p>
+ * Parent directories of the destination files are created if needed, once per
+ * target. The unpacker resolves the names of SQC files through this class, so
+ * no file is written outside of the destination directory.
+ * <p>
+ * Files are forced to the storage device according to the durability policy;
+ * with {@link Durability#END}, the target must be closed. The directories
+ * holding the forced files and the created directories are forced as well, so
+ * that the new entries survive a crash too, where the platform supports it.
+ */
+public class DirectoryTarget implements ExtractionTarget {
+
+    private final ThreadLocal<byte[]> buffers;
+
+    private final ThreadLocal<ByteBuffer> directBuffers;
+
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+    private final Queue<Path> unforced = new ConcurrentLinkedQueue<>();
+
+    private final Set<Path> unforcedDirectories = ConcurrentHashMap.newKeySet();
+
+    private boolean preallocate = true;
+
+    private boolean direct;
+
+    private Durability durability = Durability.NONE;
+
+    /**
+     * Constructs a new directory target with the specified buffer size.
+     *
+     * @param bufferSize the buffer size
+     */
+    public DirectoryTarget(int bufferSize) {
+        super();
+        this.buffers = ThreadLocal.withInitial(() -> new byte[bufferSize]);
+        this.directBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    /**
+     * Constructs a new directory target with the default buffer size.
+     *
+     * @see Unpacker#DEFAULT_BUFFER_SIZE
+     */
+    public DirectoryTarget() {
+        this(Unpacker.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Tells whether files are extended to their final size before writing.
+     *
+     * @return {@code true} if files are preallocated
+     */
+    public boolean isPreallocate() {
+        return preallocate;
+    }
+
+    /**
+     * Sets whether files are extended to their final size before writing. If a
+     * SQC file turns out shorter than its record, the file is truncated to the
+     * written content. By default, files are preallocated.
+     *
+     * @param preallocate {@code true} to preallocate files
+     */
+    public void setPreallocate(boolean preallocate) {
+        this.preallocate = preallocate;
+    }
+
+    /**
+     * Tells whether content copied through a buffer uses a direct buffer.
+     *
+     * @return {@code true} if direct buffers are used
+     */
+    public boolean isDirectBuffers() {
+        return direct;
+    }
+
+    /**
+     * Sets whether content copied through a buffer uses a direct buffer. A
+     * direct buffer is written to the file without the intermediate copy the
+     * JDK makes for heap buffers, and a SQC file whose stream is a channel is
+     * read into it directly. By default, heap buffers are used.
+     *
+     * @param direct {@code true} to use direct buffers
+     */
+    public void setDirectBuffers(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Returns the durability policy.
+     *
+     * @return the durability policy
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets the durability policy. By default, files are not forced to the
+     * storage device.
+     *
+     * @param durability the durability policy
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    @Override
+    public long write(SqcFile sqcFile, Path destFile) throws IOException {
+        long bytes;
+        try (FileChannel out = create(destFile, sqcFile.getSize())) {
+            InputStream stream = sqcFile.getStream();
+            if (stream instanceof FileChannelInputStream) {
+                bytes = ((FileChannelInputStream) stream).transferTo(out);
+            } else if (direct) {
+                bytes = copyDirect(stream, out);
+            } else {
+                bytes = copy(stream, out);
+            }
+            if (bytes < out.size()) {
+                out.truncate(bytes);
+            }
+        }
+        if (durability != Durability.NONE) {
+            unforced.add(destFile);
+        }
+        return bytes;
+    }
+
+    /**
+     * Resolves the name of a SQC file against the destination directory. Names
+     * are read from banks, so a name that is absolute or climbs out of the
+     * directory with {@code ..} is rejected rather than written elsewhere.
+     *
+     * @param destDirectory the destination directory
+     * @param name          the name of the SQC file
+     * @return the destination file
+     * @throws IOException if the name resolves outside of the directory
+     */
+    static Path resolve(Path destDirectory, String name) throws IOException {
+        Path destFile = destDirectory.resolve(name);
+        Path directory = destDirectory.normalize();
+        Path normalized = destFile.normalize();
+        if (!normalized.startsWith(directory) || normalized.equals(directory)) {
+            throw new IOException("SQC file outside of the destination directory: " + name);
+        }
+        return destFile;
+    }
+
+    /**
+     * Opens the specified destination file for writing the specified number of
+     * bytes, creating its parent directories if needed. The file is
+     * preallocated to the size if preallocation is enabled, otherwise it is
+     * truncated.
+     *
+     * @param destFile the destination file
+     * @param size     the expected size of the content
+     * @return the file channel
+     * @throws IOException if an I/O error occurs
+     */
+    FileChannel create(Path destFile, long size) throws IOException {
+        createParent(destFile);
+        return open(destFile, size);
+    }
+
+    private void createParent(Path destFile) throws IOException {
+        Path parent = destFile.getParent();
+        if (parent != null && !directories.contains(parent)) {
+            if (durability != Durability.NONE) {
+                // the entry of each directory about to be created lives in its own parent
+                for (Path directory = parent; directory != null && !Files.isDirectory(directory);
+                        directory = directory.getParent()) {
+                    if (directory.getParent() != null) {
+                        unforcedDirectories.add(directory.getParent());
+                    }
+                }
+            }
+            Files.createDirectories(parent);
+            directories.add(parent);
+        }
+    }
+
+    private FileChannel open(Path destFile, long size) throws IOException {
+        if (!preallocate || size == 0) {
+            return FileChannel.open(destFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        FileChannel channel = FileChannel.open(destFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() > size) {
+                channel.truncate(size);
+            } else if (channel.size() < size) {
+                // like ftruncate, the file gets its final size without writing the blocks in between
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private long copy(InputStream stream, FileChannel out) throws IOException {
+        long bytes = 0;
+        byte[] block = getBuffer();
+        for (int len; (len = stream.read(block)) != -1;) {
+            ByteBuffer buffer = ByteBuffer.wrap(block, 0, len);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            bytes += len;
+        }
+        return bytes;
+    }
+
+    private long copyDirect(InputStream stream, FileChannel out) throws IOException {
+        long bytes = 0;
+        ByteBuffer buffer = directBuffers.get();
+        ReadableByteChannel in = stream instanceof ReadableByteChannel ? (ReadableByteChannel) stream : null;
+        byte[] block = in == null ? getBuffer() : null;
+        while (true) {
+            buffer.clear();
+            int len;
+            if (in != null) {
+                len = in.read(buffer);
+            } else {
+                len = stream.read(block, 0, Math.min(block.length, buffer.capacity()));
+                if (len > 0) {
+                    buffer.put(block, 0, len);
+                }
+            }
+            if (len == -1) {
+                return bytes;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            bytes += len;
+        }
+    }
+
+    /**
+     * Returns the buffer of the current thread.
+     *
+     * @return the buffer
+     */
+    byte[] getBuffer() {
+        return buffers.get();
+    }
+
+    /**
+     * Forces the files written so far to the storage device if the durability
+     * policy is {@link Durability#BANK}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void finishBank() throws IOException {
+        if (durability == Durability.BANK) {
+            force();
+        }
+    }
+
+    private void force() throws IOException {
+        for (Path file; (file = unforced.poll()) != null;) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            if (file.getParent() != null) {
+                unforcedDirectories.add(file.getParent());
+            }
+        }
+        for (Iterator<Path> i = unforcedDirectories.iterator(); i.hasNext();) {
+            Path directory = i.next();
+            i.remove();
+            forceDirectory(directory);
+        }
+    }
+
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // some platforms, such as Windows, cannot open or force directories
+        }
+    }
+
+    @Override
+    public boolean isSequential() {
+        return false;
+    }
+
+    /**
+     * Forces the files not forced yet to the storage device unless the
+     * durability policy is {@link Durability#NONE}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+    }
+
+}
@@ -0,0 +1,56 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+/**
+ * Policies of forcing unpacked files to the storage device.
+ *
+ * @see DirectoryTarget#setDurability(Durability)
+ */
+public enum Durability {
+
+    /** Leaves the files to the operating system */
+    NONE,
+
+    /** Forces the files written so far whenever a SQCB file is unpacked */
+    BANK,
+
+    /** Forces all files when the target is closed */
+    END;
+
+    /**
+     * Returns the policy with the specified name, ignoring case.
+     *
+     * @param name the name
+     * @return the policy
+     * @throws IllegalArgumentException if there is no such policy
+     */
+    public static Durability of(String name) {
+        for (Durability durability : values()) {
+            if (durability.name().equalsIgnoreCase(name)) {
+                return durability;
+            }
+        }
+        throw new IllegalArgumentException("Unknown durability: " + name);
+    }
+
+}
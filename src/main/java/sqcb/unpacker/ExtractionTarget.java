@@ -0,0 +1,69 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Represents a destination of unpacked SQC files.
+ * <p>
+ * The unpacker determines the destination path of each SQC file and the target
+ * decides what the path means: a file in a directory, an entry of an archive
+ * or a key of an in-memory map.
+ *
+ * @see Unpacker#setTarget(ExtractionTarget)
+ */
+public interface ExtractionTarget extends Closeable {
+
+    /**
+     * Writes the content of the specified SQC file.
+     *
+     * @param sqcFile  the SQC file
+     * @param destFile the destination path
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    long write(SqcFile sqcFile, Path destFile) throws IOException;
+
+    /**
+     * Tells whether this target writes SQC files one by one into a single
+     * stream. The unpacker does not unpack SQC files concurrently into a
+     * sequential target.
+     *
+     * @return {@code true} if this target is sequential
+     */
+    boolean isSequential();
+
+    /**
+     * Called by the unpacker when all SQC files of a SQCB file or stream are
+     * written. SQC files of other SQCB files unpacked concurrently may still be
+     * being written. The default implementation does nothing.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    default void finishBank() throws IOException {
+        // nothing to finish by default
+    }
+
+}
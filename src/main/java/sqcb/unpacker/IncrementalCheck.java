@@ -0,0 +1,158 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decides which SQC files of a SQC bank changed since the bank was last
+ * unpacked and records them in the manifest of the current run.
+ * <p>
+ * If the SQCB file has the size and the modification time recorded in its
+ * manifest, a SQC file is unchanged if its record has not moved and the
+ * unpacked file has the expected size. Otherwise, the content of the SQC file
+ * is checksummed and compared with the checksum in the manifest or, if the
+ * manifest has no entry for it, directly with the unpacked file.
+ *
+ * @see SqcManifest
+ */
+class IncrementalCheck {
+
+    private final FileChannel channel;
+
+    private final Path destDirectory;
+
+    private final int bufferSize;
+
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    private final ThreadLocal<ByteBuffer> comparedBuffers;
+
+    private final SqcManifest previous;
+
+    private final SqcManifest current;
+
+    private final boolean bankUnchanged;
+
+    /**
+     * Constructs a new check of a SQCB file.
+     *
+     * @param channel       the channel of the SQCB file
+     * @param destDirectory the destination directory
+     * @param bufferSize    the buffer size
+     * @param previous      the manifest of the previous run or {@code null} if
+     *                      there is none
+     * @param current       the manifest of the current run
+     */
+    IncrementalCheck(FileChannel channel, Path destDirectory, int bufferSize, SqcManifest previous,
+            SqcManifest current) {
+        super();
+        this.channel = channel;
+        this.destDirectory = destDirectory;
+        this.bufferSize = bufferSize;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(bufferSize));
+        this.comparedBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(bufferSize));
+        this.previous = previous;
+        this.current = current;
+        this.bankUnchanged = previous != null && previous.matches(current.getBankSize(), current.getBankModified());
+    }
+
+    /**
+     * Tells whether the specified SQC file has to be unpacked and records it in
+     * the current manifest. This method may be called concurrently.
+     *
+     * @param record the record of the SQC file
+     * @return {@code true} if the SQC file changed or its unpacked file is missing
+     * @throws IOException if an I/O error occurs
+     */
+    boolean isChanged(SqcRecord record) throws IOException {
+        Path destFile = DirectoryTarget.resolve(destDirectory, record.getName());
+        boolean present = Files.isRegularFile(destFile) && Files.size(destFile) == record.getSize();
+        SqcManifest.Entry entry = previous == null ? null : previous.get(record.getName());
+        if (bankUnchanged && entry != null && entry.getOffset() == record.getOffset()
+                && entry.getSize() == record.getSize()) {
+            current.put(entry);
+            return !present;
+        }
+        ContentChecksum crc = new ContentChecksum(false);
+        boolean equal;
+        if (entry == null && present) {
+            try (FileChannel out = FileChannel.open(destFile, StandardOpenOption.READ)) {
+                equal = digest(record, crc, out);
+            }
+        } else {
+            digest(record, crc, null);
+            equal = present && entry != null && entry.getSize() == record.getSize();
+        }
+        String checksum = crc.getCrc32c();
+        boolean sameContent = entry != null && checksum.equals(entry.getChecksum());
+        if (entry != null) {
+            equal &= sameContent;
+        }
+        current.put(new SqcManifest.Entry(record.getName(), record.getOffset(), record.getSize(), checksum,
+                sameContent ? entry.getSha256() : null));
+        return !equal;
+    }
+
+    private boolean digest(SqcRecord record, ContentChecksum crc, FileChannel compared) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        ByteBuffer comparedBuffer = compared == null ? null : comparedBuffers.get();
+        boolean equal = compared != null;
+        long position = record.getOffset();
+        long remaining = record.getSize();
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(bufferSize, remaining));
+            int len = channel.read(buffer, position);
+            if (len < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            buffer.flip();
+            if (equal) {
+                comparedBuffer.clear();
+                comparedBuffer.limit(len);
+                readFully(compared, comparedBuffer, position - record.getOffset());
+                comparedBuffer.flip();
+                equal = buffer.equals(comparedBuffer);
+            }
+            crc.update(buffer);
+            position += len;
+            remaining -= len;
+        }
+        return equal;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps unpacked SQC files in memory as direct (off-heap) byte buffers, keyed
+ * by their destination paths.
+ * <p>
+ * The target suits services that consume the content directly instead of
+ * reading it back from files. The buffers are read-only and stay available
+ * after the target is closed.
+ */
+public class MemoryTarget implements ExtractionTarget {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Map<Path, ByteBuffer> files = new ConcurrentHashMap<>();
+
+    @Override
+    public long write(SqcFile sqcFile, Path destFile) throws IOException {
+        if (sqcFile.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("File too large for a buffer: " + sqcFile.getName());
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) sqcFile.getSize());
+        InputStream stream = sqcFile.getStream();
+        if (stream instanceof ReadableByteChannel) {
+            ReadableByteChannel channel = (ReadableByteChannel) stream;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException("Unexpected end of stream");
+                }
+            }
+        } else {
+            byte[] chunk = new byte[Math.min(CHUNK_SIZE, buffer.capacity())];
+            while (buffer.hasRemaining()) {
+                int len = stream.read(chunk, 0, Math.min(chunk.length, buffer.remaining()));
+                if (len == -1) {
+                    throw new IOException("Unexpected end of stream");
+                }
+                buffer.put(chunk, 0, len);
+            }
+        }
+        buffer.flip();
+        files.put(destFile, buffer.asReadOnlyBuffer());
+        return buffer.limit();
+    }
+
+    /**
+     * Returns the content of the SQC file unpacked to the specified path.
+     *
+     * @param destFile the destination path
+     * @return the read-only buffer with the content or {@code null} if there is
+     *         none
+     */
+    public ByteBuffer get(Path destFile) {
+        ByteBuffer buffer = files.get(destFile);
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    /**
+     * Returns the unpacked SQC files.
+     *
+     * @return the unmodifiable map of read-only buffers by destination paths
+     */
+    public Map<Path, ByteBuffer> getFiles() {
+        return Collections.unmodifiableMap(files);
+    }
+
+    @Override
+    public boolean isSequential() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // the buffers stay available
+    }
+
+}
@@ -0,0 +1,73 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Runs unpacking tasks in parallel.
+ * <p>
+ * This implementation uses platform threads and the common fork/join pool. The
+ * multi-release JAR replaces it on Java 21 and later with an implementation
+ * running the tasks on virtual threads.
+ */
+final class ParallelTasks {
+
+    private ParallelTasks() {
+        super();
+    }
+
+    /**
+     * Creates an executor running up to the specified number of tasks
+     * concurrently.
+     *
+     * @param threads the number of threads
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Applies the task to the items accepted by the filter in parallel and
+     * summarizes the results. Both the filter and the task may be called
+     * concurrently. Exceptions thrown by them are rethrown.
+     *
+     * @param <T>     the type of the items
+     * @param items   the items
+     * @param threads the number of threads; this implementation ignores it and
+     *                uses the common fork/join pool
+     * @param filter  the filter of items
+     * @param task    the task
+     * @return the statistics of the task results
+     */
+    static <T> LongSummaryStatistics sum(Stream<T> items, int threads, Predicate<? super T> filter,
+            ToLongFunction<? super T> task) {
+        return items.parallel().filter(filter).mapToLong(task).summaryStatistics();
+    }
+
+}
@@ -0,0 +1,177 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A predicate that tests names of records against include and exclude
+ * patterns.
+ * <p>
+ * A pattern is either a glob ({@code glob:*.sqc} or just {@code *.sqc}) or a
+ * regular expression ({@code regex:.*\.sqc}). A glob supports {@code *},
+ * {@code ?}, bracket expressions such as {@code [a-z]} or {@code [!0-9]} and
+ * groups such as {@code {intro,outro}}. A pattern has to match the whole
+ * name. A record is accepted if it matches any include pattern, or if there
+ * are no include patterns, and does not match any exclude pattern.
+ */
+public class RecordFilter implements Predicate<SqcRecord> {
+
+    private static final String GLOB_PREFIX = "glob:";
+
+    private static final String REGEX_PREFIX = "regex:";
+
+    private final List<Pattern> includes;
+
+    private final List<Pattern> excludes;
+
+    /**
+     * Constructs a new filter with the specified patterns.
+     *
+     * @param includes the include patterns
+     * @param excludes the exclude patterns
+     * @throws IllegalArgumentException if a pattern is invalid
+     */
+    public RecordFilter(List<String> includes, List<String> excludes) {
+        super();
+        this.includes = compile(includes);
+        this.excludes = compile(excludes);
+    }
+
+    @Override
+    public boolean test(SqcRecord record) {
+        String name = record.getName();
+        return (includes.isEmpty() || matchesAny(includes, name)) && !matchesAny(excludes, name);
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String name) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Pattern> compile(List<String> patterns) {
+        List<Pattern> compiled = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            compiled.add(compile(pattern));
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles the specified glob or regular expression pattern.
+     *
+     * @param pattern the pattern
+     * @return the compiled pattern
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    static Pattern compile(String pattern) {
+        if (pattern.startsWith(REGEX_PREFIX)) {
+            return Pattern.compile(pattern.substring(REGEX_PREFIX.length()));
+        } else if (pattern.startsWith(GLOB_PREFIX)) {
+            return Pattern.compile(globToRegex(pattern.substring(GLOB_PREFIX.length()), false));
+        } else {
+            return Pattern.compile(globToRegex(pattern, false));
+        }
+    }
+
+    /**
+     * Compiles the specified glob pattern of paths. Unlike in the patterns of
+     * the filter, {@code *} and {@code ?} do not match {@code /}, so they stay
+     * within a name, while {@code **} matches across names.
+     *
+     * @param glob the glob pattern
+     * @return the compiled pattern
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public static Pattern compilePathGlob(String glob) {
+        return Pattern.compile(globToRegex(glob, true));
+    }
+
+    private static String globToRegex(String glob, boolean path) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char ch = glob.charAt(i);
+            switch (ch) {
+            case '*':
+                if (path && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append(path ? "[^/]*" : ".*");
+                }
+                break;
+            case '?':
+                regex.append(path ? "[^/]" : ".");
+                break;
+            case '[':
+                int end = glob.indexOf(']', i + 2);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed bracket expression: " + glob);
+                }
+                String expression = glob.substring(i + 1, end);
+                if (expression.startsWith("!")) {
+                    expression = "^" + expression.substring(1);
+                }
+                regex.append('[').append(expression.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = end;
+                break;
+            case '{':
+                if (inGroup) {
+                    throw new IllegalArgumentException("Nested groups are not supported: " + glob);
+                }
+                regex.append("(?:");
+                inGroup = true;
+                break;
+            case '}':
+                if (inGroup) {
+                    regex.append(')');
+                    inGroup = false;
+                } else {
+                    regex.append("\\}");
+                }
+                break;
+            case ',':
+                regex.append(inGroup ? "|" : ",");
+                break;
+            default:
+                if ("\\.^$|+()".indexOf(ch) >= 0) {
+                    regex.append('\\');
+                }
+                regex.append(ch);
+                break;
+            }
+        }
+        if (inGroup) {
+            throw new IllegalArgumentException("Unclosed group: " + glob);
+        }
+        return regex.toString();
+    }
+
+}
@@ -24,6 +24,7 @@ package sqcb.unpacker;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -39,12 +40,18 @@ public class SqcBank implements AutoCloseable {
 
     protected static final String VERSION = "1.00";
 
-    private final CountingInputStream stream;
+    private final InputStream source;
+
+    private CountingInputStream stream;
+
+    private SqcTable table;
 
     private List<SqcRecord> records;
 
     private int currentRecord;
 
+    private LimitedInputStream currentStream;
+
     /**
      * Constructs a new SQC bank from the specified input stream.
      *
@@ -52,7 +59,36 @@ public class SqcBank implements AutoCloseable {
      */
     public SqcBank(InputStream stream) {
         super();
-        this.stream = new CountingInputStream(stream);
+        this.source = stream;
+    }
+
+    /**
+     * Returns the table of records of this SQC bank. Only the table at the
+     * beginning of the bank is read, the content of the SQC files is not
+     * touched.
+     *
+     * @return the table of records
+     * @throws IOException if an I/O error occurs
+     */
+    public SqcTable getTable() throws IOException {
+        ensureRecordsRead();
+        return table;
+    }
+
+    /**
+     * Returns the records of this SQC bank. Only the table at the beginning of
+     * the bank is read, the content of the SQC files is not touched. The
+     * records are created from the table on the first call and kept by this
+     * bank, so that {@link #next()} returns SQC files with the same records.
+     *
+     * @return the unmodifiable list of records
+     * @throws IOException if an I/O error occurs
+     */
+    public List<SqcRecord> getRecords() throws IOException {
+        if (records == null) {
+            records = Collections.unmodifiableList(new ArrayList<>(getTable().asList()));
+        }
+        return records;
     }
 
     /**
@@ -63,11 +99,15 @@ public class SqcBank implements AutoCloseable {
      */
     public boolean hasNext() throws IOException {
         ensureRecordsRead();
-        return currentRecord < records.size();
+        return currentRecord < table.size();
     }
 
     /**
      * Returns the next SQC file from this SQC bank.
+     * <p>
+     * Any unread content of the previous SQC file is skipped. All SQC files
+     * returned by this bank share a single stream, which reads the content of
+     * the most recently returned file.
      *
      * @return the next SQC file
      * @throws NoSuchElementException if there is none
@@ -75,86 +115,41 @@ public class SqcBank implements AutoCloseable {
      */
     public SqcFile next() throws IOException {
         ensureRecordsRead();
-        if (currentRecord >= records.size()) {
+        if (currentRecord >= table.size()) {
             throw new NoSuchElementException();
         }
-        SqcRecord record = records.get(currentRecord);
+        SqcRecord record = records != null ? records.get(currentRecord) : table.getRecord(currentRecord);
         currentRecord++;
+        if (currentStream != null) {
+            currentStream.skipRemaining();
+        }
         if (stream.getBytesRead() != record.getOffset()) {
             throw new IOException("Broken file");
         }
-        return new SqcFile(record, new LimitedInputStream(stream, record.getSize()));
+        if (currentStream == null) {
+            currentStream = new LimitedInputStream(stream, record.getSize());
+        } else {
+            currentStream.setLimit(record.getSize());
+        }
+        return new SqcFile(record, currentStream);
     }
 
     private void ensureRecordsRead() throws IOException {
-        if (records == null) {
+        if (table == null) {
             readRecords();
         }
     }
 
     private void readRecords() throws IOException {
-        String header = readFixedString(HEADER.length());
-        if (!HEADER.equals(header)) {
-            throw new IOException("Invalid header");
-        }
-        String version = readFixedString(VERSION.length());
-        if (!VERSION.equals(version)) {
-            throw new IOException("Invalid version");
-        }
-        int number = readInt();
-        this.records = new ArrayList<>(number);
-        for (int i = 0; i < number; i++) {
-            String recordName = readNullTerminatedString();
-            int recordOffset = readInt();
-            int recordSize = readInt();
-            SqcRecord record = new SqcRecord(recordName, recordOffset, recordSize);
-            records.add(record);
-        }
-    }
-
-    private String readFixedString(int length) throws IOException {
-        char[] chars = new char[length];
-        for (int i = 0; i < length; i++) {
-            chars[i] = readChar();
-        }
-        return new String(chars);
-    }
-
-    private String readNullTerminatedString() throws IOException {
-        StringBuilder builder = new StringBuilder();
-        char ch = readChar();
-        while (ch != 0) {
-            builder.append(ch);
-            ch = readChar();
-        }
-        return builder.toString();
-    }
-
-    private char readChar() throws IOException {
-        byte b1 = readByte();
-        byte b2 = readByte();
-        return (char) ((b1 & 0xff) | ((b2 & 0xff) << 8));
-    }
-
-    private int readInt() throws IOException {
-        byte b1 = readByte();
-        byte b2 = readByte();
-        byte b3 = readByte();
-        byte b4 = readByte();
-        return (b1 & 0xff) | ((b2 & 0xff) << 8) | ((b3 & 0xff) << 16) | ((b4 & 0xff) << 24);
-    }
-
-    private byte readByte() throws IOException {
-        int b = this.stream.read();
-        if (b == -1) {
-            throw new IOException("Unexpected end of stream");
-        }
-        return (byte) b;
+        SqcTableReader reader = new SqcTableReader();
+        this.table = reader.readTable(source);
+        InputStream content = reader.getRemainingStream(source);
+        this.stream = new CountingInputStream(content, reader.getTableLength());
     }
 
     @Override
     public void close() throws IOException {
-        this.stream.close();
+        this.source.close();
     }
 
 }
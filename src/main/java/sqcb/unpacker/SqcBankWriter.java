@@ -0,0 +1,236 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import sqcb.unpacker.io.FileChannelInputStream;
+
+/**
+ * Writes SQC banks (SQCB).
+ * <p>
+ * The SQC files are added first. The table of records is then computed up
+ * front and the bank is written in one sequential pass: the header and the
+ * table from a single buffer followed by the content of the SQC files.
+ * Content of files is transferred from channel to channel.
+ */
+public class SqcBankWriter {
+
+    /** Maximum offset and size of a SQC file, an unsigned 32-bit value */
+    private static final long MAX_VALUE = 0xFFFFFFFFL;
+
+    private final int bufferSize;
+
+    private final List<Source> sources = new ArrayList<>();
+
+    /**
+     * Constructs a new writer with the specified buffer size used for stream
+     * sources.
+     *
+     * @param bufferSize the buffer size
+     */
+    public SqcBankWriter(int bufferSize) {
+        super();
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Constructs a new writer with the default buffer size.
+     *
+     * @see Unpacker#DEFAULT_BUFFER_SIZE
+     */
+    public SqcBankWriter() {
+        this(Unpacker.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Adds a SQC file with the content of the specified file.
+     *
+     * @param name the name of the SQC file
+     * @param file the file with the content
+     * @throws IOException if an I/O error occurs
+     */
+    public void add(String name, Path file) throws IOException {
+        sources.add(new Source(checkName(name), Files.size(file), file, null));
+    }
+
+    /**
+     * Adds a SQC file with the content read from the specified stream. The
+     * stream is read when the bank is written and it has to provide at least
+     * the specified number of bytes. It is not closed by this writer.
+     *
+     * @param name   the name of the SQC file
+     * @param size   the size of the content
+     * @param stream the stream with the content
+     */
+    public void add(String name, long size, InputStream stream) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        sources.add(new Source(checkName(name), size, null, stream));
+    }
+
+    /**
+     * Returns the records of the bank in the order they are written.
+     *
+     * @return the records
+     * @throws IOException if the bank would be too large
+     */
+    public List<SqcRecord> getRecords() throws IOException {
+        long offset = getTableLength();
+        List<SqcRecord> records = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            if (offset > MAX_VALUE || source.size > MAX_VALUE) {
+                throw new IOException("Bank too large");
+            }
+            records.add(new SqcRecord(source.name, offset, source.size));
+            offset += source.size;
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * Writes the bank into the specified file.
+     *
+     * @param bankFile the SQCB file
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Path bankFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(bankFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel);
+        }
+    }
+
+    /**
+     * Writes the bank into the specified channel.
+     *
+     * @param channel the channel
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        List<SqcRecord> records = getRecords();
+        writeFully(channel, encodeTable(records));
+        ByteBuffer buffer = null;
+        for (Source source : sources) {
+            if (source.file != null) {
+                transfer(source, channel);
+            } else {
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate(bufferSize);
+                }
+                copy(source, channel, buffer);
+            }
+        }
+    }
+
+    private long getTableLength() {
+        long length = 2 * SqcBank.HEADER.length() + 2 * SqcBank.VERSION.length() + 4;
+        for (Source source : sources) {
+            length += 2 * (source.name.length() + 1) + 4 + 4;
+        }
+        return length;
+    }
+
+    private ByteBuffer encodeTable(List<SqcRecord> records) {
+        ByteBuffer table = ByteBuffer.allocate((int) getTableLength()).order(ByteOrder.LITTLE_ENDIAN);
+        table.put(SqcBank.HEADER.getBytes(StandardCharsets.UTF_16LE));
+        table.put(SqcBank.VERSION.getBytes(StandardCharsets.UTF_16LE));
+        table.putInt(records.size());
+        for (SqcRecord record : records) {
+            table.put(record.getName().getBytes(StandardCharsets.UTF_16LE));
+            table.putChar((char) 0);
+            table.putInt((int) record.getOffset());
+            table.putInt((int) record.getSize());
+        }
+        table.flip();
+        return table;
+    }
+
+    private static void transfer(Source source, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.file, StandardOpenOption.READ)) {
+            if (FileChannelInputStream.transfer(channel, 0, source.size, target) < source.size) {
+                throw new IOException("File changed while writing bank: " + source.file);
+            }
+        }
+    }
+
+    private static void copy(Source source, WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        long remaining = source.size;
+        while (remaining > 0) {
+            buffer.clear();
+            int len = source.stream.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), remaining));
+            if (len == -1) {
+                throw new IOException("Unexpected end of stream: " + source.name);
+            }
+            buffer.limit(len);
+            writeFully(target, buffer);
+            remaining -= len;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String checkName(String name) {
+        if (name.isEmpty() || name.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("Invalid name: " + name);
+        }
+        return name;
+    }
+
+    private static class Source {
+
+        private final String name;
+
+        private final long size;
+
+        private final Path file;
+
+        private final InputStream stream;
+
+        Source(String name, long size, Path file, InputStream stream) {
+            super();
+            this.name = name;
+            this.size = size;
+            this.file = file;
+            this.stream = stream;
+        }
+
+    }
+
+}
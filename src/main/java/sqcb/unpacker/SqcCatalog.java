@@ -0,0 +1,578 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import sqcb.unpacker.io.CountingOutputStream;
+
+/**
+ * Represents a catalog of the records of many SQCB files, so that the SQCB file
+ * containing a SQC file can be found without reading the tables of all SQCB
+ * files.
+ * <p>
+ * The catalog records the size and the modification time of each SQCB file
+ * along with its records, held in a compact {@link SqcTable}. Updating the
+ * catalog reads only the tables of SQCB files that were added or changed since
+ * and drops SQCB files that no longer exist. Lookups by name use the name index
+ * of each table, so entries are created for the found records only. Lookups
+ * and searches compare the size and the modification time of each SQCB file
+ * with a found record to the catalog and leave out the records of SQCB files
+ * that changed or no longer exist until the catalog is updated. A SQCB file
+ * that cannot be read is dropped from the catalog and reported by
+ * {@link #getFailures()}, while the other SQCB files are still updated.
+ * <p>
+ * The catalog is stored in a binary file: the magic number {@code SQCC}, the
+ * version, the number of SQCB files and of records and for each SQCB file its
+ * absolute path, size, modification time and records with their names, offsets
+ * and sizes. An index keyed by record name follows: an open-addressing hash
+ * table whose slots hold the position of a record and the number of its SQCB
+ * file, and the positions of the SQCB files. The file ends with the position of
+ * the index. {@link #lookup(Path, List)} probes the index of a stored catalog
+ * and reads only the found records, without reading the catalog. Strings are
+ * stored in modified UTF-8 and numbers in big-endian order.
+ */
+public class SqcCatalog {
+
+    private static final int MAGIC = 0x53514343;
+
+    private static final int VERSION = 2;
+
+    /** Length of the header: the magic number, the version and the counts */
+    private static final int HEADER_LENGTH = 16;
+
+    /** Length of an index slot: the position of a record and its SQCB file */
+    private static final int SLOT_LENGTH = 12;
+
+    private final Map<Path, Bank> banks = new TreeMap<>();
+
+    private final Map<Path, IOException> failures = new TreeMap<>();
+
+    /**
+     * Constructs a new empty catalog.
+     */
+    public SqcCatalog() {
+        super();
+    }
+
+    /**
+     * Reads the catalog from the specified file.
+     *
+     * @param file the catalog file
+     * @return the catalog or {@code null} if the file does not exist or is not
+     *         a valid catalog
+     * @throws IOException if an I/O error occurs
+     */
+    public static SqcCatalog read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            SqcCatalog catalog = new SqcCatalog();
+            int bankCount = in.readInt();
+            in.readInt();
+            for (int i = 0; i < bankCount; i++) {
+                Path bankFile = Paths.get(in.readUTF());
+                long size = in.readLong();
+                long modified = in.readLong();
+                int records = in.readInt();
+                SqcTable.Builder builder = new SqcTable.Builder(records);
+                for (int j = 0; j < records; j++) {
+                    builder.add(in.readUTF(), in.readInt() & 0xFFFFFFFFL, in.readInt() & 0xFFFFFFFFL);
+                }
+                catalog.banks.put(bankFile, new Bank(size, modified, builder.build()));
+            }
+            return catalog;
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the SQC files with the specified names in the catalog stored in
+     * the specified file. Only the index and the found records are read. SQC
+     * files of SQCB files that changed since they were catalogued are left out.
+     *
+     * @param file  the catalog file
+     * @param names the names
+     * @return the entries of the found SQC files in the order of the names and
+     *         the paths of their SQCB files, or {@code null} if the file does
+     *         not exist or is not a valid catalog
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<Entry> lookup(Path file, List<String> names) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_LENGTH + 8) {
+                return null;
+            }
+            ByteBuffer header = read(channel, 0, 8);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            long indexPosition = read(channel, fileSize - 8, 8).getLong();
+            if (indexPosition < HEADER_LENGTH || indexPosition > fileSize - 12) {
+                return null;
+            }
+            int slots = read(channel, indexPosition, 4).getInt();
+            long slotsPosition = indexPosition + 4;
+            long banksPosition = slotsPosition + (long) slots * SLOT_LENGTH;
+            if (slots <= 0 || Integer.bitCount(slots) != 1 || banksPosition > fileSize - 8) {
+                return null;
+            }
+            Map<Integer, Path> bankFiles = new HashMap<>();
+            List<Entry> entries = new ArrayList<>();
+            for (String name : names) {
+                int mask = slots - 1;
+                for (int slot = spread(name.hashCode()) & mask;; slot = (slot + 1) & mask) {
+                    ByteBuffer entry = read(channel, slotsPosition + (long) slot * SLOT_LENGTH, SLOT_LENGTH);
+                    long recordPosition = entry.getLong();
+                    if (recordPosition == 0) {
+                        break;
+                    }
+                    int bank = entry.getInt();
+                    ByteBuffer record = read(channel, recordPosition, 2);
+                    int nameLength = record.getShort() & 0xFFFF;
+                    record = read(channel, recordPosition, 2 + nameLength + 8);
+                    if (!name.equals(readUTF(record))) {
+                        continue;
+                    }
+                    if (!bankFiles.containsKey(bank)) {
+                        long bankPosition = read(channel, banksPosition + 8L * bank, 8).getLong();
+                        int pathLength = read(channel, bankPosition, 2).getShort() & 0xFFFF;
+                        ByteBuffer bankEntry = read(channel, bankPosition, 2 + pathLength + 16);
+                        Path bankFile = Paths.get(readUTF(bankEntry));
+                        // a changed SQCB file is mapped to null, so its records are skipped
+                        bankFiles.put(bank, isCurrent(bankFile, bankEntry.getLong(), bankEntry.getLong())
+                                ? bankFile
+                                : null);
+                    }
+                    Path bankFile = bankFiles.get(bank);
+                    if (bankFile != null) {
+                        entries.add(new Entry(bankFile, name, record.getInt() & 0xFFFFFFFFL,
+                                record.getInt() & 0xFFFFFFFFL));
+                    }
+                }
+            }
+            return entries;
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String readUTF(ByteBuffer buffer) throws IOException {
+        int length = 2 + (buffer.getShort(buffer.position()) & 0xFFFF);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(buffer.array(), buffer.position(), length));
+        String str = in.readUTF();
+        buffer.position(buffer.position() + length);
+        return str;
+    }
+
+    private static boolean isCurrent(Path bankFile, long size, long modified) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(bankFile, BasicFileAttributes.class);
+            return attributes.size() == size && attributes.lastModifiedTime().toMillis() == modified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Writes this catalog into the specified file. The file is replaced
+     * atomically.
+     *
+     * @param file the catalog file
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void write(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int recordCount = getRecordCount();
+        long[] recordPositions = new long[recordCount];
+        long[] bankPositions = new long[banks.size()];
+        CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)));
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(banks.size());
+            out.writeInt(recordCount);
+            int bankNumber = 0;
+            int recordNumber = 0;
+            for (Map.Entry<Path, Bank> bankEntry : banks.entrySet()) {
+                Bank bank = bankEntry.getValue();
+                bankPositions[bankNumber++] = counter.getBytesWritten();
+                out.writeUTF(bankEntry.getKey().toString());
+                out.writeLong(bank.size);
+                out.writeLong(bank.modified);
+                out.writeInt(bank.table.size());
+                for (int i = 0; i < bank.table.size(); i++) {
+                    recordPositions[recordNumber++] = counter.getBytesWritten();
+                    out.writeUTF(bank.table.getName(i));
+                    out.writeInt((int) bank.table.getOffset(i));
+                    out.writeInt((int) bank.table.getSize(i));
+                }
+            }
+            writeIndex(out, counter.getBytesWritten(), recordPositions, bankPositions);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeIndex(DataOutputStream out, long indexPosition, long[] recordPositions, long[] bankPositions)
+            throws IOException {
+        int slots = 1;
+        while (slots < 2 * recordPositions.length) {
+            slots <<= 1;
+        }
+        long[] slotPositions = new long[slots];
+        int[] slotBanks = new int[slots];
+        int mask = slots - 1;
+        int bankNumber = 0;
+        int recordNumber = 0;
+        for (Bank bank : banks.values()) {
+            for (int i = 0; i < bank.table.size(); i++) {
+                // linear probing keeps records of the same name in the order of their SQCB files
+                int slot = spread(bank.table.getName(i).hashCode()) & mask;
+                while (slotPositions[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slotPositions[slot] = recordPositions[recordNumber++];
+                slotBanks[slot] = bankNumber;
+            }
+            bankNumber++;
+        }
+        out.writeInt(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            out.writeLong(slotPositions[slot]);
+            out.writeInt(slotBanks[slot]);
+        }
+        for (long bankPosition : bankPositions) {
+            out.writeLong(bankPosition);
+        }
+        out.writeLong(indexPosition);
+    }
+
+    /**
+     * Updates this catalog with the specified SQCB files or all SQCB files
+     * contained in the specified directories. Paths that no longer exist are
+     * removed from this catalog. SQCB files that cannot be read are dropped and
+     * reported by {@link #getFailures()}.
+     *
+     * @param paths the paths
+     * @return the number of SQCB files whose tables were read
+     * @throws IOException if a directory cannot be walked
+     */
+    public int updatePaths(List<String> paths) throws IOException {
+        int read = 0;
+        for (String pathStr : paths) {
+            Path path = Paths.get(pathStr);
+            if (Files.isDirectory(path)) {
+                read += updateDirectory(path);
+            } else if (Files.isRegularFile(path)) {
+                read += updateReadable(path) ? 1 : 0;
+            } else {
+                remove(path);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Updates this catalog with all SQCB files contained in the specified
+     * directory and its subdirectories. SQCB files of the directory that no
+     * longer exist are removed from this catalog. SQCB files that cannot be
+     * read are dropped and reported by {@link #getFailures()}.
+     *
+     * @param directory the directory
+     * @return the number of SQCB files whose tables were read
+     * @throws IOException if the directory cannot be walked
+     */
+    public int updateDirectory(Path directory) throws IOException {
+        Path root = normalize(directory);
+        Set<Path> found = new HashSet<>();
+        int[] read = new int[1];
+        BankDiscovery.walk(root, (file, size) -> {
+            found.add(file);
+            if (updateReadable(file)) {
+                read[0]++;
+            }
+        });
+        synchronized (this) {
+            banks.keySet().removeIf(bankFile -> bankFile.startsWith(root) && !found.contains(bankFile));
+            failures.keySet().removeIf(bankFile -> bankFile.startsWith(root) && !found.contains(bankFile));
+        }
+        return read[0];
+    }
+
+    private boolean updateReadable(Path bankFile) {
+        try {
+            return updateFile(bankFile);
+        } catch (IOException e) {
+            // recorded by updateFile, so that the other SQCB files are still updated
+            return false;
+        }
+    }
+
+    /**
+     * Updates this catalog with the specified SQCB file. The table of the SQCB
+     * file is read only if the file is not in this catalog yet or its size or
+     * modification time changed. If the SQCB file cannot be read, it is dropped
+     * from this catalog and reported by {@link #getFailures()}.
+     *
+     * @param bankFile the SQCB file
+     * @return {@code true} if the table was read
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean updateFile(Path bankFile) throws IOException {
+        Path path = normalize(bankFile);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            synchronized (this) {
+                Bank bank = banks.get(path);
+                if (bank != null && bank.size == size && bank.modified == modified) {
+                    return false;
+                }
+            }
+            SqcTable table;
+            try (SqcChannelBank channelBank = new SqcChannelBank(path)) {
+                table = channelBank.getTable();
+            }
+            synchronized (this) {
+                banks.put(path, new Bank(size, modified, table));
+                failures.remove(path);
+            }
+            return true;
+        } catch (IOException e) {
+            synchronized (this) {
+                banks.remove(path);
+                failures.put(path, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the specified SQCB file from this catalog.
+     *
+     * @param bankFile the SQCB file
+     * @return {@code true} if the SQCB file was in this catalog
+     */
+    public synchronized boolean remove(Path bankFile) {
+        Path path = normalize(bankFile);
+        failures.remove(path);
+        return banks.remove(path) != null;
+    }
+
+    /**
+     * Returns the SQCB files that could not be read by the updates of this
+     * catalog, along with the reasons. A SQCB file is no longer reported once
+     * it is read or removed.
+     *
+     * @return the unmodifiable map of absolute paths of the SQCB files to the
+     *         exceptions, in the order of the paths
+     */
+    public synchronized Map<Path, IOException> getFailures() {
+        return Collections.unmodifiableMap(new TreeMap<>(failures));
+    }
+
+    /**
+     * Returns the entries of the SQC files with the specified name in the order
+     * of the paths of their SQCB files. SQC files of SQCB files that changed
+     * since they were catalogued are left out.
+     *
+     * @param name the name
+     * @return the list of entries, empty if there is none
+     */
+    public synchronized List<Entry> find(String name) {
+        List<Entry> entries = new ArrayList<>(1);
+        for (Map.Entry<Path, Bank> bankEntry : banks.entrySet()) {
+            SqcTable table = bankEntry.getValue().table;
+            int record = table.indexOf(name);
+            if (record >= 0 && bankEntry.getValue().isCurrent(bankEntry.getKey())) {
+                entries.add(new Entry(bankEntry.getKey(), table.getRecord(record)));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the entries of the SQC files accepted by the specified filter in
+     * the order of the paths of their SQCB files and their offsets. All records
+     * are tested, so prefer {@link #find(String)} to look up names. SQC files
+     * of SQCB files that changed since they were catalogued are left out.
+     *
+     * @param filter the filter
+     * @return the list of entries
+     */
+    public synchronized List<Entry> find(Predicate<? super SqcRecord> filter) {
+        List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<Path, Bank> bankEntry : banks.entrySet()) {
+            Boolean current = null;
+            for (SqcRecord record : bankEntry.getValue().table.asList()) {
+                if (filter.test(record)) {
+                    if (current == null) {
+                        current = bankEntry.getValue().isCurrent(bankEntry.getKey());
+                    }
+                    if (current) {
+                        entries.add(new Entry(bankEntry.getKey(), record));
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the SQCB files of this catalog.
+     *
+     * @return the unmodifiable list of absolute paths of the SQCB files in
+     *         their order
+     */
+    public synchronized List<Path> getBanks() {
+        return Collections.unmodifiableList(new ArrayList<>(banks.keySet()));
+    }
+
+    /**
+     * Returns the number of SQC files of all SQCB files of this catalog.
+     *
+     * @return the number of SQC files
+     */
+    public synchronized int getRecordCount() {
+        int count = 0;
+        for (Bank bank : banks.values()) {
+            count += bank.table.size();
+        }
+        return count;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static final class Bank {
+
+        private final long size;
+
+        private final long modified;
+
+        private final SqcTable table;
+
+        Bank(long size, long modified, SqcTable table) {
+            super();
+            this.size = size;
+            this.modified = modified;
+            this.table = table;
+        }
+
+        boolean isCurrent(Path bankFile) {
+            return SqcCatalog.isCurrent(bankFile, size, modified);
+        }
+
+    }
+
+    /**
+     * Represents a record of a SQC file in a catalog along with its SQCB file.
+     * The SQC file can be read by
+     * {@code new SqcChannelBank(entry.getBank()).getFile(entry)}.
+     */
+    public static class Entry extends SqcRecord {
+
+        private final Path bank;
+
+        /**
+         * Constructs a new entry.
+         *
+         * @param bank   the SQCB file
+         * @param name   the name of the SQC file
+         * @param offset the offset in the SQCB file
+         * @param size   the size
+         */
+        public Entry(Path bank, String name, long offset, long size) {
+            super(name, offset, size);
+            this.bank = bank;
+        }
+
+        /**
+         * Constructs a new entry with the fields copied from the specified
+         * record.
+         *
+         * @param bank   the SQCB file
+         * @param record the record
+         */
+        public Entry(Path bank, SqcRecord record) {
+            super(record);
+            this.bank = bank;
+        }
+
+        /**
+         * Returns the SQCB file containing the SQC file.
+         *
+         * @return the SQCB file
+         */
+        public Path getBank() {
+            return bank;
+        }
+
+    }
+
+}
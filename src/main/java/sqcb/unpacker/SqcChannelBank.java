@@ -0,0 +1,251 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import sqcb.unpacker.io.FileChannelInputStream;
+
+/**
+ * Represents a SQC bank (SQCB) stored in a file.
+ * <p>
+ * Unlike {@link SqcBank}, this bank reads its table of records only once and
+ * then serves the SQC files in any order, repeatedly and concurrently, using
+ * positional reads or memory mapping of the underlying file channel.
+ */
+public class SqcChannelBank implements AutoCloseable {
+
+    private final FileChannel channel;
+
+    private final BankMapper mapper;
+
+    private SqcTable table;
+
+    private volatile List<SqcRecord> records;
+
+    private int currentRecord;
+
+    /**
+     * Constructs a new SQC bank from the specified file.
+     *
+     * @param file the SQCB file
+     * @throws IOException if an I/O error occurs
+     */
+    public SqcChannelBank(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /**
+     * Constructs a new SQC bank from the specified file channel. The channel is
+     * closed when the bank is closed.
+     *
+     * @param channel the file channel
+     */
+    public SqcChannelBank(FileChannel channel) {
+        super();
+        this.channel = channel;
+        this.mapper = new BankMapper(channel);
+    }
+
+    /**
+     * Returns the table of records of this SQC bank. Unlike
+     * {@link #getRecords()}, the table does not create a record object per SQC
+     * file.
+     *
+     * @return the table of records
+     * @throws IOException if an I/O error occurs
+     */
+    public SqcTable getTable() throws IOException {
+        ensureTableRead();
+        return table;
+    }
+
+    /**
+     * Returns the records of this SQC bank. The records are created from the
+     * table on the first call and kept by this bank.
+     *
+     * @return the unmodifiable list of records
+     * @throws IOException if an I/O error occurs
+     */
+    public List<SqcRecord> getRecords() throws IOException {
+        List<SqcRecord> list = records;
+        if (list == null) {
+            synchronized (this) {
+                list = records;
+                if (list == null) {
+                    list = Collections.unmodifiableList(new ArrayList<>(getTable().asList()));
+                    records = list;
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the first record with the specified name. The record is looked
+     * up in the table in constant time. If the records were already returned
+     * by {@link #getRecords()}, the same record object is returned.
+     *
+     * @param name the name
+     * @return the record or {@code null} if there is none
+     * @throws IOException if an I/O error occurs
+     */
+    public SqcRecord getRecord(String name) throws IOException {
+        int index = getTable().indexOf(name);
+        return index < 0 ? null : getRecord(index);
+    }
+
+    private SqcRecord getRecord(int index) {
+        List<SqcRecord> list = records;
+        return list != null ? list.get(index) : table.getRecord(index);
+    }
+
+    /**
+     * Returns the SQC file with the specified index.
+     *
+     * @param index the index of the record
+     * @return the SQC file
+     * @throws IndexOutOfBoundsException if there is no such record
+     * @throws IOException               if an I/O error occurs
+     */
+    public SqcFile getFile(int index) throws IOException {
+        getTable();
+        return getFile(getRecord(index));
+    }
+
+    /**
+     * Returns the SQC file described by the specified record. The stream of the
+     * returned file reads the record content directly from the bank and is
+     * independent of the streams of other files.
+     *
+     * @param record the record
+     * @return the SQC file
+     * @throws IOException if an I/O error occurs or the record lies outside the
+     *                     bank
+     */
+    public SqcFile getFile(SqcRecord record) throws IOException {
+        checkBounds(record);
+        return new SqcFile(record, new FileChannelInputStream(channel, record.getOffset(), record.getSize()));
+    }
+
+    /**
+     * Returns a sequential stream of the SQC files of this SQC bank. The stream
+     * splits well, so {@code files().parallel()} processes the SQC files
+     * concurrently. The streams of the SQC files are independent of each other.
+     * If a record lies outside the bank, the stream throws an
+     * {@link java.io.UncheckedIOException}.
+     *
+     * @return the stream of SQC files
+     * @throws IOException if an I/O error occurs
+     */
+    public Stream<SqcFile> files() throws IOException {
+        List<SqcRecord> list = getRecords();
+        return StreamSupport.stream(new SqcFileSpliterator(this, list, 0, list.size()), false);
+    }
+
+    /**
+     * Maps the content of the specified record into memory.
+     * <p>
+     * On Java 22 and later, the whole bank is mapped once and unmapped when the
+     * bank is closed, so the returned buffer must not be used after closing the
+     * bank.
+     *
+     * @param record the record
+     * @return the read-only buffer with the record content
+     * @throws IOException if an I/O error occurs, the record lies outside the
+     *                     bank or is too large for a single buffer
+     */
+    public ByteBuffer map(SqcRecord record) throws IOException {
+        checkBounds(record);
+        if (record.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("Record too large to map: " + record.getName());
+        }
+        return mapper.map(record.getOffset(), record.getSize());
+    }
+
+    /**
+     * Tells whether this SQC bank contains a next SQC file.
+     *
+     * @return {@code true} if there is a next SQC file or {@code false} otherwise
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean hasNext() throws IOException {
+        return currentRecord < getTable().size();
+    }
+
+    /**
+     * Returns the next SQC file from this SQC bank.
+     *
+     * @return the next SQC file
+     * @throws NoSuchElementException if there is none
+     * @throws IOException            if an I/O error occurs
+     */
+    public SqcFile next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return getFile(currentRecord++);
+    }
+
+    /**
+     * Returns the underlying file channel.
+     *
+     * @return the file channel
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    private void checkBounds(SqcRecord record) throws IOException {
+        long offset = record.getOffset();
+        long size = record.getSize();
+        if (offset < 0 || size < 0 || offset + size > channel.size()) {
+            throw new IOException("Broken file");
+        }
+    }
+
+    private synchronized void ensureTableRead() throws IOException {
+        if (table == null) {
+            this.table = new SqcTableReader().readTable(channel);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            mapper.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -40,7 +40,7 @@ public class SqcFile extends SqcRecord {
      * @param size   the size
      * @param stream the stream with the file content
      */
-    public SqcFile(String name, int offset, int size, InputStream stream) {
+    public SqcFile(String name, long offset, long size, InputStream stream) {
         super(name, offset, size);
         this.stream = stream;
     }
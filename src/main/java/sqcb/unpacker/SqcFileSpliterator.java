@@ -0,0 +1,109 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Implements a spliterator of SQC files of a SQC bank backed by a file
+ * channel. The spliterator splits the table of records in halves and every
+ * SQC file gets its own stream reading the channel independently, so the SQC
+ * files can be processed in parallel.
+ *
+ * @see SqcChannelBank#files()
+ */
+class SqcFileSpliterator implements Spliterator<SqcFile> {
+
+    private final SqcChannelBank bank;
+
+    private final List<SqcRecord> records;
+
+    private int index;
+
+    private final int fence;
+
+    /**
+     * Constructs a new spliterator of the specified range of records.
+     *
+     * @param bank    the SQC bank
+     * @param records the records of the bank
+     * @param index   the index of the first record (inclusive)
+     * @param fence   the index of the last record (exclusive)
+     */
+    SqcFileSpliterator(SqcChannelBank bank, List<SqcRecord> records, int index, int fence) {
+        super();
+        this.bank = bank;
+        this.records = records;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super SqcFile> action) {
+        if (index < fence) {
+            action.accept(getFile(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super SqcFile> action) {
+        while (index < fence) {
+            action.accept(getFile(index++));
+        }
+    }
+
+    @Override
+    public Spliterator<SqcFile> trySplit() {
+        int mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        Spliterator<SqcFile> prefix = new SqcFileSpliterator(bank, records, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private SqcFile getFile(int i) {
+        try {
+            return bank.getFile(records.get(i));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
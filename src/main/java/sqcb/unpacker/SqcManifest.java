@@ -0,0 +1,394 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a manifest of an unpacked SQC bank. The manifest records the size
+ * and the modification time of the SQCB file and the offset, the size, the
+ * CRC-32C and optionally the SHA-256 digest of each unpacked SQC file, so that
+ * a later run can tell which SQC files changed and the unpacked files can be
+ * verified.
+ * <p>
+ * The manifest is a UTF-8 text file stored next to the SQCB file with the
+ * {@code .manifest} extension appended to its name. Each SQC file takes a line
+ * whose last field is its name, so since the third version a backslash, a line
+ * feed and a carriage return in a name are escaped as {@code \\}, {@code \n}
+ * and {@code \r}. Manifests of the second version are read as well, while
+ * those of the first version, which recorded CRC-32 checksums, are not read.
+ */
+public class SqcManifest {
+
+    /** Extension of manifest files (manifest) */
+    public static final String EXTENSION = "manifest";
+
+    private static final String HEADER = "# SQCB manifest 3";
+
+    /** Header of the second version, which did not escape names */
+    private static final String HEADER_2 = "# SQCB manifest 2";
+
+    private static final String NO_DIGEST = "-";
+
+    private final long bankSize;
+
+    private final long bankModified;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Constructs a new empty manifest.
+     *
+     * @param bankSize     the size of the SQCB file
+     * @param bankModified the modification time of the SQCB file in milliseconds
+     */
+    public SqcManifest(long bankSize, long bankModified) {
+        super();
+        this.bankSize = bankSize;
+        this.bankModified = bankModified;
+    }
+
+    /**
+     * Constructs a new empty manifest of the specified SQCB file with its
+     * current size and modification time.
+     *
+     * @param bankFile the SQCB file
+     * @return the manifest
+     * @throws IOException if an I/O error occurs
+     */
+    public static SqcManifest of(Path bankFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(bankFile, BasicFileAttributes.class);
+        return new SqcManifest(attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * Returns the manifest file of the specified SQCB file.
+     *
+     * @param bankFile the SQCB file
+     * @return the manifest file
+     */
+    public static Path getFile(Path bankFile) {
+        return bankFile.resolveSibling(bankFile.getFileName() + "." + EXTENSION);
+    }
+
+    /**
+     * Reads the manifest from the specified file.
+     *
+     * @param file the manifest file
+     * @return the manifest or {@code null} if the file does not exist or is not
+     *         a valid manifest
+     * @throws IOException if an I/O error occurs
+     */
+    public static SqcManifest read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            boolean escaped = HEADER.equals(header);
+            if (!escaped && !HEADER_2.equals(header)) {
+                return null;
+            }
+            SqcManifest manifest = new SqcManifest(parseField(reader.readLine(), "size"),
+                    parseField(reader.readLine(), "modified"));
+            for (String line; (line = reader.readLine()) != null;) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    return null;
+                }
+                manifest.put(new Entry(escaped ? unescape(fields[4]) : fields[4], Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        fields[2], NO_DIGEST.equals(fields[3]) ? null : fields[3]));
+            }
+            return manifest;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long parseField(String line, String name) {
+        if (line == null || !line.startsWith(name + " ")) {
+            throw new IllegalArgumentException("Missing field: " + name);
+        }
+        return Long.parseLong(line.substring(name.length() + 1));
+    }
+
+    /**
+     * Writes this manifest into the specified file. The entries are written in
+     * the order of their offsets and the file is replaced atomically.
+     *
+     * @param file the manifest file
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void write(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER + "\n");
+            writer.write("size " + bankSize + "\n");
+            writer.write("modified " + bankModified + "\n");
+            List<Entry> sorted = new ArrayList<>(entries.values());
+            sorted.sort(Comparator.comparingLong(Entry::getOffset).thenComparing(Entry::getName));
+            for (Entry entry : sorted) {
+                String sha256 = entry.getSha256() == null ? NO_DIGEST : entry.getSha256();
+                writer.write(entry.getOffset() + "\t" + entry.getSize() + "\t" + entry.getChecksum() + "\t" + sha256
+                        + "\t" + escape(entry.getName()) + "\n");
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String escape(String name) {
+        if (name.indexOf('\\') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0) {
+            return name;
+        }
+        StringBuilder escaped = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\\') {
+                escaped.append("\\\\");
+            } else if (c == '\n') {
+                escaped.append("\\n");
+            } else if (c == '\r') {
+                escaped.append("\\r");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String name) {
+        if (name.indexOf('\\') < 0) {
+            return name;
+        }
+        StringBuilder unescaped = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\\') {
+                char next = ++i < name.length() ? name.charAt(i) : 0;
+                if (next == 'n') {
+                    c = '\n';
+                } else if (next == 'r') {
+                    c = '\r';
+                } else if (next == '\\') {
+                    c = '\\';
+                } else {
+                    throw new IllegalArgumentException("Invalid escape: " + name);
+                }
+            }
+            unescaped.append(c);
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Tells whether this manifest describes a SQCB file of the specified size
+     * and modification time.
+     *
+     * @param size     the size of the SQCB file
+     * @param modified the modification time of the SQCB file in milliseconds
+     * @return {@code true} if the SQCB file matches
+     */
+    public boolean matches(long size, long modified) {
+        return bankSize == size && bankModified == modified;
+    }
+
+    /**
+     * Returns the size of the SQCB file.
+     *
+     * @return the size
+     */
+    public long getBankSize() {
+        return bankSize;
+    }
+
+    /**
+     * Returns the modification time of the SQCB file.
+     *
+     * @return the modification time in milliseconds
+     */
+    public long getBankModified() {
+        return bankModified;
+    }
+
+    /**
+     * Returns the entry of the SQC file with the specified name.
+     *
+     * @param name the name
+     * @return the entry or {@code null} if there is none
+     */
+    public synchronized Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Adds or replaces the entry of a SQC file.
+     *
+     * @param entry the entry
+     */
+    public synchronized void put(Entry entry) {
+        entries.put(entry.getName(), entry);
+    }
+
+    /**
+     * Carries the entries of the specified records over from the previous
+     * manifest of the SQCB file if this manifest has none, such as the entries
+     * of SQC files not accepted by a filter. They still describe the files
+     * unpacked by an earlier run, but only as long as the SQCB file did not
+     * change, so nothing is carried over from a manifest of another SQCB file
+     * or for a record with another offset or size.
+     *
+     * @param previous the previous manifest or {@code null} if there is none
+     * @param records  the records of the SQCB file
+     */
+    public synchronized void carryOver(SqcManifest previous, Collection<? extends SqcRecord> records) {
+        if (previous == null || !previous.matches(bankSize, bankModified)) {
+            return;
+        }
+        for (SqcRecord record : records) {
+            if (!entries.containsKey(record.getName())) {
+                Entry entry = previous.get(record.getName());
+                if (entry != null && entry.getOffset() == record.getOffset()
+                        && entry.getSize() == record.getSize()) {
+                    entries.put(entry.getName(), entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entries of this manifest.
+     *
+     * @return the unmodifiable collection of entries
+     */
+    public synchronized Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * Represents an entry of a SQC file in a manifest.
+     */
+    public static class Entry {
+
+        private final String name;
+
+        private final long offset;
+
+        private final long size;
+
+        private final String checksum;
+
+        private final String sha256;
+
+        /**
+         * Constructs a new entry without a SHA-256 digest.
+         *
+         * @param name     the name of the SQC file
+         * @param offset   the offset in the SQCB file
+         * @param size     the size
+         * @param checksum the CRC-32C of the content as eight hexadecimal digits
+         */
+        public Entry(String name, long offset, long size, String checksum) {
+            this(name, offset, size, checksum, null);
+        }
+
+        /**
+         * Constructs a new entry.
+         *
+         * @param name     the name of the SQC file
+         * @param offset   the offset in the SQCB file
+         * @param size     the size
+         * @param checksum the CRC-32C of the content as eight hexadecimal digits
+         * @param sha256   the SHA-256 digest of the content as hexadecimal
+         *                 digits or {@code null} if it is not recorded
+         */
+        public Entry(String name, long offset, long size, String checksum, String sha256) {
+            super();
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+            this.checksum = checksum;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * Returns the name of the SQC file.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the offset in the SQCB file.
+         *
+         * @return the offset
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the size.
+         *
+         * @return the size
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the CRC-32C of the content.
+         *
+         * @return the CRC-32C as eight hexadecimal digits
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Returns the SHA-256 digest of the content.
+         *
+         * @return the SHA-256 digest as hexadecimal digits or {@code null} if it
+         *         is not recorded
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+    }
+
+}
@@ -30,18 +30,18 @@ public class SqcRecord {
 
     private final String name;
 
-    private final int offset;
+    private final long offset;
 
-    private final int size;
+    private final long size;
 
     /**
      * Constructs a new record.
      *
      * @param name   the name
-     * @param offset the offset
-     * @param size   the size
+     * @param offset the offset, an unsigned 32-bit value
+     * @param size   the size, an unsigned 32-bit value
      */
-    public SqcRecord(String name, int offset, int size) {
+    public SqcRecord(String name, long offset, long size) {
         super();
         this.name = name;
         this.offset = offset;
@@ -71,7 +71,7 @@ public class SqcRecord {
      *
      * @return the offset
      */
-    public int getOffset() {
+    public long getOffset() {
         return offset;
     }
 
@@ -80,7 +80,7 @@ public class SqcRecord {
      *
      * @return the size
      */
-    public int getSize() {
+    public long getSize() {
         return size;
     }
 
@@ -0,0 +1,412 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Represents the table of records of a SQC bank in a compact form.
+ * <p>
+ * The offsets and sizes are held in primitive arrays and the names are packed
+ * into a single byte array, one byte per character if all names are
+ * ISO-8859-1 and two bytes per character (UTF-16LE) otherwise. Records are
+ * materialized only when requested. Names are looked up through an
+ * open-addressing hash index in constant time without creating any objects;
+ * if several records have the same name, the first one is found.
+ * <p>
+ * The table is immutable and safe for use by multiple threads.
+ */
+public final class SqcTable {
+
+    private static final int[] NO_INTS = new int[0];
+
+    private final int count;
+
+    private final int[] offsets;
+
+    private final int[] sizes;
+
+    private final int[] nameEnds;
+
+    private final byte[] names;
+
+    private final boolean latin1;
+
+    private final int[] index;
+
+    private SqcTable(int count, int[] offsets, int[] sizes, int[] nameEnds, char[] chars, int length) {
+        super();
+        this.count = count;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.nameEnds = nameEnds;
+        this.latin1 = isLatin1(chars, length);
+        this.names = pack(chars, length, latin1);
+        this.index = new int[indexCapacity(count)];
+        for (int i = 0; i < count; i++) {
+            insert(i, hash(chars, nameStart(i), nameEnds[i]));
+        }
+    }
+
+    /**
+     * Returns a table of the specified records.
+     *
+     * @param records the records
+     * @return the table
+     */
+    public static SqcTable of(List<? extends SqcRecord> records) {
+        Builder builder = new Builder(records.size());
+        for (SqcRecord record : records) {
+            builder.add(record.getName(), record.getOffset(), record.getSize());
+        }
+        return builder.build();
+    }
+
+    private static boolean isLatin1(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] pack(char[] chars, int length, boolean latin1) {
+        byte[] bytes = new byte[latin1 ? length : 2 * length];
+        for (int i = 0; i < length; i++) {
+            if (latin1) {
+                bytes[i] = (byte) chars[i];
+            } else {
+                bytes[2 * i] = (byte) chars[i];
+                bytes[2 * i + 1] = (byte) (chars[i] >>> 8);
+            }
+        }
+        return bytes;
+    }
+
+    private static int indexCapacity(int count) {
+        // at most half full, so that probe sequences stay short
+        int capacity = 2;
+        while (capacity < 2 * count) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void insert(int record, int hash) {
+        int mask = index.length - 1;
+        for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) {
+                index[slot] = record + 1;
+                return;
+            }
+            if (nameEquals(entry - 1, record)) {
+                // the first record of a name wins
+                return;
+            }
+        }
+    }
+
+    private static int hash(char[] chars, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private int nameStart(int record) {
+        return record == 0 ? 0 : nameEnds[record - 1];
+    }
+
+    private char charAt(int position) {
+        return latin1 ? (char) (names[position] & 0xFF)
+                : (char) ((names[2 * position] & 0xFF) | (names[2 * position + 1] & 0xFF) << 8);
+    }
+
+    private boolean nameEquals(int record, int other) {
+        int start = nameStart(record);
+        int otherStart = nameStart(other);
+        int length = nameEnds[record] - start;
+        if (nameEnds[other] - otherStart != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(start + i) != charAt(otherStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nameEquals(int record, String name) {
+        int start = nameStart(record);
+        if (nameEnds[record] - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the index of the first record with the specified name.
+     *
+     * @param name the name
+     * @return the index or {@code -1} if there is no such record
+     */
+    public int indexOf(String name) {
+        // String.hashCode() uses the same function and is cached by the string
+        int mask = index.length - 1;
+        for (int slot = spread(name.hashCode()) & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (nameEquals(entry - 1, name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the first record with the specified name.
+     *
+     * @param name the name
+     * @return the new record or {@code null} if there is none
+     */
+    public SqcRecord find(String name) {
+        int record = indexOf(name);
+        return record < 0 ? null : getRecord(record);
+    }
+
+    /**
+     * Returns the name of the record with the specified index.
+     *
+     * @param record the index of the record
+     * @return the name
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public String getName(int record) {
+        checkIndex(record);
+        int start = nameStart(record);
+        int length = nameEnds[record] - start;
+        return latin1 ? new String(names, start, length, StandardCharsets.ISO_8859_1)
+                : new String(names, 2 * start, 2 * length, StandardCharsets.UTF_16LE);
+    }
+
+    /**
+     * Returns the offset of the record with the specified index.
+     *
+     * @param record the index of the record
+     * @return the offset, an unsigned 32-bit value
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public long getOffset(int record) {
+        checkIndex(record);
+        return offsets[record] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the size of the record with the specified index.
+     *
+     * @param record the index of the record
+     * @return the size, an unsigned 32-bit value
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public long getSize(int record) {
+        checkIndex(record);
+        return sizes[record] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the record with the specified index. A new record is created on
+     * each call.
+     *
+     * @param record the index of the record
+     * @return the new record
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public SqcRecord getRecord(int record) {
+        return new SqcRecord(getName(record), getOffset(record), getSize(record));
+    }
+
+    /**
+     * Returns an unmodifiable list view of the records. The records are created
+     * whenever they are retrieved from the list.
+     *
+     * @return the list of records
+     */
+    public List<SqcRecord> asList() {
+        return new RecordList();
+    }
+
+    private void checkIndex(int record) {
+        if (record < 0 || record >= count) {
+            throw new IndexOutOfBoundsException("Index: " + record + ", size: " + count);
+        }
+    }
+
+    private final class RecordList extends AbstractList<SqcRecord> implements RandomAccess {
+
+        @Override
+        public SqcRecord get(int index) {
+            return getRecord(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+    }
+
+    /**
+     * Builds a table record by record.
+     */
+    static final class Builder {
+
+        private static final int MAX_INITIAL_CAPACITY = 1024;
+
+        private int count;
+
+        private int[] offsets;
+
+        private int[] sizes;
+
+        private int[] nameEnds;
+
+        private char[] chars;
+
+        private int length;
+
+        /**
+         * Constructs a new builder of a table with the expected number of
+         * records.
+         *
+         * @param expected the expected number of records
+         */
+        Builder(int expected) {
+            super();
+            int capacity = Math.min(expected, MAX_INITIAL_CAPACITY);
+            this.offsets = capacity == 0 ? NO_INTS : new int[capacity];
+            this.sizes = capacity == 0 ? NO_INTS : new int[capacity];
+            this.nameEnds = capacity == 0 ? NO_INTS : new int[capacity];
+            this.chars = new char[16 * Math.max(1, capacity)];
+        }
+
+        /**
+         * Returns the number of records added.
+         *
+         * @return the number of records
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Adds a record.
+         *
+         * @param name   the name
+         * @param offset the offset, an unsigned 32-bit value
+         * @param size   the size, an unsigned 32-bit value
+         */
+        void add(String name, long offset, long size) {
+            ensureChars(name.length());
+            name.getChars(0, name.length(), chars, length);
+            length += name.length();
+            addRecord(offset, size);
+        }
+
+        /**
+         * Adds a record whose name is encoded in UTF-16LE in the specified
+         * region of a little-endian buffer.
+         *
+         * @param buffer     the buffer
+         * @param nameIndex  the index of the name in the buffer
+         * @param nameLength the length of the name in bytes
+         * @param offset     the offset, an unsigned 32-bit value
+         * @param size       the size, an unsigned 32-bit value
+         */
+        void add(ByteBuffer buffer, int nameIndex, int nameLength, long offset, long size) {
+            int nameChars = nameLength / 2;
+            ensureChars(nameChars);
+            for (int i = 0; i < nameChars; i++) {
+                chars[length++] = buffer.getChar(nameIndex + 2 * i);
+            }
+            addRecord(offset, size);
+        }
+
+        private void ensureChars(int required) {
+            if (length + required > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(2 * chars.length, length + required));
+            }
+        }
+
+        private void addRecord(long offset, long size) {
+            if (count == offsets.length) {
+                int capacity = Math.max(16, 2 * count);
+                offsets = Arrays.copyOf(offsets, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                nameEnds = Arrays.copyOf(nameEnds, capacity);
+            }
+            offsets[count] = (int) offset;
+            sizes[count] = (int) size;
+            nameEnds[count] = length;
+            count++;
+        }
+
+        /**
+         * Builds the table. The arrays are trimmed to the number of records.
+         *
+         * @return the table
+         */
+        SqcTable build() {
+            return new SqcTable(count, Arrays.copyOf(offsets, count), Arrays.copyOf(sizes, count),
+                    Arrays.copyOf(nameEnds, count), chars, length);
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the table of records from the beginning of a SQC bank.
+ * <p>
+ * The table is read in blocks into a little-endian byte buffer and decoded
+ * from it, so the parsing does not depend on reading the source byte by byte.
+ * The buffer grows until it holds the whole table; any bytes read past the end
+ * of the table are available through {@link #getRemainingStream()}. The
+ * records are collected into a compact {@link SqcTable}.
+ */
+class SqcTableReader {
+
+    /** Length of the header, the version and the number of records */
+    private static final int FIXED_LENGTH = 2 * SqcBank.HEADER.length() + 2 * SqcBank.VERSION.length() + 4;
+
+    /** Length of the name terminator, the offset and the size of a record */
+    private static final int RECORD_LENGTH = 2 + 4 + 4;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private SqcTable.Builder records;
+
+    private int number = -1;
+
+    private int parsed;
+
+    /**
+     * Reads the header and the records of a SQC bank from the specified stream.
+     *
+     * @param stream the stream positioned at the beginning of a SQC bank
+     * @return the table of records
+     * @throws IOException if an I/O error occurs or the header is invalid
+     */
+    SqcTable readTable(InputStream stream) throws IOException {
+        while (!parse()) {
+            ensureSpace();
+            int c = stream.read(buffer.array(), buffer.position(), buffer.remaining());
+            if (c == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            buffer.position(buffer.position() + c);
+        }
+        return records.build();
+    }
+
+    /**
+     * Reads the header and the records of a SQC bank from the beginning of the
+     * specified channel. The position of the channel is not changed.
+     *
+     * @param channel the file channel
+     * @return the table of records
+     * @throws IOException if an I/O error occurs or the header is invalid
+     */
+    SqcTable readTable(FileChannel channel) throws IOException {
+        while (!parse()) {
+            ensureSpace();
+            int c = channel.read(buffer, buffer.position());
+            if (c == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+        }
+        return records.build();
+    }
+
+    /**
+     * Returns the length of the table, i.e. the offset of the first byte after
+     * the table.
+     *
+     * @return the length of the table
+     */
+    int getTableLength() {
+        return parsed;
+    }
+
+    /**
+     * Returns a stream that reads the bytes that were read past the end of the
+     * table followed by the rest of the specified source stream.
+     *
+     * @param source the stream the table was read from
+     * @return the stream of the remaining bytes
+     * @throws IOException if an I/O error occurs
+     */
+    InputStream getRemainingStream(InputStream source) throws IOException {
+        int length = buffer.position() - parsed;
+        PushbackInputStream stream = new PushbackInputStream(source, Math.max(1, length));
+        stream.unread(buffer.array(), parsed, length);
+        return stream;
+    }
+
+    private void ensureSpace() {
+        if (!buffer.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    private boolean parse() throws IOException {
+        int limit = buffer.position();
+        if (number < 0) {
+            int headerLength = 2 * SqcBank.HEADER.length();
+            if (limit < headerLength) {
+                return false;
+            }
+            if (!SqcBank.HEADER.equals(decode(0, headerLength))) {
+                throw new IOException("Invalid header");
+            }
+            if (limit < FIXED_LENGTH - 4) {
+                return false;
+            }
+            if (!SqcBank.VERSION.equals(decode(headerLength, 2 * SqcBank.VERSION.length()))) {
+                throw new IOException("Invalid version");
+            }
+            if (limit < FIXED_LENGTH) {
+                return false;
+            }
+            number = buffer.getInt(FIXED_LENGTH - 4);
+            if (number < 0) {
+                throw new IOException("Invalid number of records");
+            }
+            records = new SqcTable.Builder(number);
+            parsed = FIXED_LENGTH;
+        }
+        while (records.size() < number) {
+            int terminator = findTerminator(parsed, limit);
+            if (terminator < 0 || terminator + RECORD_LENGTH > limit) {
+                return false;
+            }
+            long recordOffset = buffer.getInt(terminator + 2) & 0xFFFFFFFFL;
+            long recordSize = buffer.getInt(terminator + 6) & 0xFFFFFFFFL;
+            records.add(buffer, parsed, terminator - parsed, recordOffset, recordSize);
+            parsed = terminator + RECORD_LENGTH;
+        }
+        return true;
+    }
+
+    private int findTerminator(int from, int limit) {
+        for (int i = from; i + 1 < limit; i += 2) {
+            if (buffer.getChar(i) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String decode(int index, int length) {
+        return new String(buffer.array(), index, length, StandardCharsets.UTF_16LE);
+    }
+
+}
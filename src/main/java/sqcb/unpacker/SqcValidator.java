@@ -0,0 +1,301 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Validates the structure of SQCB files without unpacking them.
+ * <p>
+ * Only the table of records and the size of each SQCB file are read. The header
+ * and the version must be valid, and the records must follow the table in the
+ * order of their offsets, each starting where the previous one ends, and the
+ * last one must end at the end of the file. A SQCB file passing the validation
+ * can be unpacked without a broken file error. The SQCB files are validated
+ * concurrently on the specified number of threads.
+ */
+public class SqcValidator {
+
+    /** Maximum number of problems reported for a single SQCB file */
+    private static final int MAX_PROBLEMS = 16;
+
+    private final int threads;
+
+    /**
+     * Constructs a new validator.
+     *
+     * @param threads the number of threads
+     */
+    public SqcValidator(int threads) {
+        super();
+        this.threads = threads;
+    }
+
+    /**
+     * Validates the specified SQCB files or all SQCB files contained in the
+     * specified directories. A path that is not a directory is validated as a
+     * SQCB file, so a missing path is reported as invalid.
+     *
+     * @param paths the paths
+     * @return the report
+     * @throws IOException if an I/O error occurs
+     */
+    public Report validatePaths(List<String> paths) throws IOException {
+        List<Path> bankFiles = new ArrayList<>();
+        for (String pathStr : paths) {
+            Path path = Paths.get(pathStr);
+            if (Files.isDirectory(path)) {
+                bankFiles.addAll(Unpacker.findFiles(path));
+            } else {
+                bankFiles.add(path);
+            }
+        }
+        return validateFiles(bankFiles);
+    }
+
+    /**
+     * Validates the specified SQCB files.
+     *
+     * @param bankFiles the SQCB files
+     * @return the report
+     * @throws IOException if an I/O error occurs
+     */
+    public Report validateFiles(List<Path> bankFiles) throws IOException {
+        ExecutorService executor = ParallelTasks.newExecutor(Math.max(1, Math.min(threads, bankFiles.size())));
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Path bankFile : bankFiles) {
+                futures.add(executor.submit(() -> validate(bankFile)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                results.add(await(future));
+            }
+            return new Report(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Validates the specified SQCB file.
+     *
+     * @param bankFile the SQCB file
+     * @return the result
+     */
+    public Result validate(Path bankFile) {
+        SqcTable table;
+        long fileSize;
+        int tableLength;
+        try (FileChannel channel = FileChannel.open(bankFile, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            SqcTableReader reader = new SqcTableReader();
+            table = reader.readTable(channel);
+            tableLength = reader.getTableLength();
+        } catch (NoSuchFileException e) {
+            return new Result(bankFile, 0, Collections.singletonList("Missing file"));
+        } catch (IOException e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            return new Result(bankFile, 0, Collections.singletonList(message));
+        }
+        List<String> problems = new ArrayList<>();
+        int skipped = 0;
+        long end = tableLength;
+        for (int i = 0; i < table.size(); i++) {
+            long offset = table.getOffset(i);
+            long size = table.getSize(i);
+            String problem = null;
+            if (offset < tableLength) {
+                problem = "Record " + table.getName(i) + " at " + offset + " overlaps the table ending at "
+                        + tableLength;
+            } else if (offset + size > fileSize) {
+                problem = "Record " + table.getName(i) + " ends at " + (offset + size) + " beyond the end of file at "
+                        + fileSize;
+            } else if (i > 0 && offset < table.getOffset(i - 1)) {
+                problem = "Record " + table.getName(i) + " at " + offset + " is out of order";
+            } else if (offset < end) {
+                problem = "Record " + table.getName(i) + " at " + offset + " overlaps the previous record ending at "
+                        + end;
+            } else if (offset > end) {
+                problem = "Gap of " + (offset - end) + " bytes before record " + table.getName(i);
+            }
+            if (problem != null) {
+                if (problems.size() < MAX_PROBLEMS) {
+                    problems.add(problem);
+                } else {
+                    skipped++;
+                }
+            }
+            end = Math.max(end, offset + size);
+        }
+        if (end < fileSize) {
+            problems.add((fileSize - end) + " bytes after the last record");
+        }
+        if (skipped > 0) {
+            problems.add(skipped + " more problem(s)");
+        }
+        return new Result(bankFile, table.size(), problems);
+    }
+
+    private static Result await(Future<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Validation interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Represents the results of a validation.
+     */
+    public static class Report {
+
+        private final List<Result> results;
+
+        /**
+         * Constructs a new report.
+         *
+         * @param results the results of the SQCB files
+         */
+        public Report(List<Result> results) {
+            super();
+            this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        }
+
+        /**
+         * Returns the results in the order of the SQCB files.
+         *
+         * @return the unmodifiable list of results
+         */
+        public List<Result> getResults() {
+            return results;
+        }
+
+        /**
+         * Returns the number of SQCB files that are not valid.
+         *
+         * @return the number of invalid files
+         */
+        public int getInvalid() {
+            int invalid = 0;
+            for (Result result : results) {
+                if (!result.isValid()) {
+                    invalid++;
+                }
+            }
+            return invalid;
+        }
+
+    }
+
+    /**
+     * Represents the result of validating a SQCB file.
+     */
+    public static class Result {
+
+        private final Path file;
+
+        private final int records;
+
+        private final List<String> problems;
+
+        /**
+         * Constructs a new result.
+         *
+         * @param file     the SQCB file
+         * @param records  the number of records
+         * @param problems the problems found
+         */
+        public Result(Path file, int records, List<String> problems) {
+            super();
+            this.file = file;
+            this.records = records;
+            this.problems = Collections.unmodifiableList(new ArrayList<>(problems));
+        }
+
+        /**
+         * Returns the SQCB file.
+         *
+         * @return the file
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the number of records in the table of the SQCB file.
+         *
+         * @return the number of records, {@code 0} if the table is unreadable
+         */
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * Returns the problems found in the SQCB file.
+         *
+         * @return the unmodifiable list of problems
+         */
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        /**
+         * Tells whether the SQCB file is valid.
+         *
+         * @return {@code true} if no problems were found
+         */
+        public boolean isValid() {
+            return problems.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return file + ": " + (problems.isEmpty() ? "OK, " + records + " record(s)" : String.join("; ", problems));
+        }
+
+    }
+
+}
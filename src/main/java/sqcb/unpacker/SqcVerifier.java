@@ -0,0 +1,270 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Verifies unpacked SQC files against the manifests of their SQCB files.
+ * <p>
+ * Each unpacked file listed in a manifest is read once and its size, CRC-32C
+ * and, if recorded, SHA-256 digest are compared with the manifest. The SQCB
+ * files themselves are not read. The unpacked files are verified concurrently
+ * on the specified number of threads.
+ *
+ * @see Unpacker#setChecksums(boolean)
+ * @see SqcManifest
+ */
+public class SqcVerifier {
+
+    private final int threads;
+
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    /**
+     * Constructs a new verifier.
+     *
+     * @param bufferSize the buffer size
+     * @param threads    the number of threads
+     */
+    public SqcVerifier(int bufferSize, int threads) {
+        super();
+        this.threads = threads;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(bufferSize));
+    }
+
+    /**
+     * Verifies the SQC files unpacked from the specified SQCB files or all SQCB
+     * files contained in the specified directories.
+     *
+     * @param paths the paths
+     * @return the report
+     * @throws IOException if an I/O error occurs
+     */
+    public Report verifyPaths(List<String> paths) throws IOException {
+        List<Path> bankFiles = new ArrayList<>();
+        for (String pathStr : paths) {
+            Path path = Paths.get(pathStr);
+            if (Files.isDirectory(path)) {
+                bankFiles.addAll(Unpacker.findFiles(path));
+            } else if (Files.isRegularFile(path)) {
+                bankFiles.add(path);
+            }
+        }
+        return verifyFiles(bankFiles);
+    }
+
+    /**
+     * Verifies the SQC files unpacked from the specified SQCB files. A SQCB file
+     * without a manifest is reported as a mismatch.
+     *
+     * @param bankFiles the SQCB files
+     * @return the report
+     * @throws IOException if an I/O error occurs
+     */
+    public Report verifyFiles(List<Path> bankFiles) throws IOException {
+        ExecutorService executor = ParallelTasks.newExecutor(threads);
+        try {
+            List<Future<Mismatch>> futures = new ArrayList<>();
+            int files = 0;
+            for (Path bankFile : bankFiles) {
+                SqcManifest manifest = SqcManifest.read(SqcManifest.getFile(bankFile));
+                if (manifest == null) {
+                    futures.add(CompletableFuture.completedFuture(new Mismatch(bankFile, "Missing manifest")));
+                    continue;
+                }
+                for (SqcManifest.Entry entry : manifest.getEntries()) {
+                    Path file = bankFile.resolveSibling(entry.getName());
+                    futures.add(executor.submit(() -> verify(file, entry)));
+                    files++;
+                }
+            }
+            List<Mismatch> mismatches = new ArrayList<>();
+            for (Future<Mismatch> future : futures) {
+                Mismatch mismatch = await(future);
+                if (mismatch != null) {
+                    mismatches.add(mismatch);
+                }
+            }
+            return new Report(files, mismatches);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Mismatch await(Future<Mismatch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Verification interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private Mismatch verify(Path file, SqcManifest.Entry entry) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size != entry.getSize()) {
+                return new Mismatch(file, "Size " + size + ", expected " + entry.getSize());
+            }
+            ContentChecksum checksum = new ContentChecksum(entry.getSha256() != null);
+            ByteBuffer buffer = buffers.get();
+            for (long position = 0; position < size;) {
+                buffer.clear();
+                int len = channel.read(buffer, position);
+                if (len < 0) {
+                    break;
+                }
+                buffer.flip();
+                checksum.update(buffer);
+                position += len;
+            }
+            String crc = checksum.getCrc32c();
+            if (!crc.equals(entry.getChecksum())) {
+                return new Mismatch(file, "CRC-32C " + crc + ", expected " + entry.getChecksum());
+            }
+            String sha256 = checksum.getSha256();
+            if (sha256 != null && !sha256.equals(entry.getSha256())) {
+                return new Mismatch(file, "SHA-256 " + sha256 + ", expected " + entry.getSha256());
+            }
+            return null;
+        } catch (NoSuchFileException e) {
+            return new Mismatch(file, "Missing file");
+        } catch (IOException e) {
+            return new Mismatch(file, "Unreadable file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Represents the result of a verification.
+     */
+    public static class Report {
+
+        private final int files;
+
+        private final List<Mismatch> mismatches;
+
+        /**
+         * Constructs a new report.
+         *
+         * @param files      the number of verified SQC files
+         * @param mismatches the mismatches
+         */
+        public Report(int files, List<Mismatch> mismatches) {
+            super();
+            this.files = files;
+            this.mismatches = Collections.unmodifiableList(new ArrayList<>(mismatches));
+        }
+
+        /**
+         * Returns the number of verified SQC files.
+         *
+         * @return the number of files
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns the mismatches in the order of the SQCB files and their
+         * manifest entries.
+         *
+         * @return the unmodifiable list of mismatches
+         */
+        public List<Mismatch> getMismatches() {
+            return mismatches;
+        }
+
+    }
+
+    /**
+     * Represents an unpacked SQC file, or a SQCB file, that does not match its
+     * manifest.
+     */
+    public static class Mismatch {
+
+        private final Path file;
+
+        private final String reason;
+
+        /**
+         * Constructs a new mismatch.
+         *
+         * @param file   the file
+         * @param reason the reason
+         */
+        public Mismatch(Path file, String reason) {
+            super();
+            this.file = file;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns the file.
+         *
+         * @return the file
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the reason.
+         *
+         * @return the reason
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return file + ": " + reason;
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unpacks SQC files in two pipelined stages, so that reading the bank and
+ * writing the unpacked files overlap.
+ * <p>
+ * The reader stage runs in the calling thread and fills buffers taken from a
+ * fixed ring with the content of the SQC files. The writer stages drain the
+ * filled buffers into the destination files using positional writes and
+ * return them to the ring. When all buffers are filled, the reader waits, so
+ * the memory used by the pipeline never exceeds the number of buffers times
+ * their size.
+ * <p>
+ * The destination files are opened by a {@link DirectoryTarget}, so they are
+ * created and preallocated the same way as files written by the target.
+ */
+final class UnpackPipeline implements Closeable {
+
+    /**
+     * Receives notifications about SQC files written by the pipeline. The
+     * notifications are delivered by the writer stages.
+     */
+    interface Completion {
+
+        /**
+         * Called when a SQC file is written or fails.
+         *
+         * @param event the event; its error is {@code null} on success
+         */
+        void completed(UnpackerEvent event);
+
+    }
+
+    private static final Chunk END = new Chunk(null, null, 0);
+
+    private final BlockingQueue<ByteBuffer> ring;
+
+    private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+
+    private final DirectoryTarget target;
+
+    private final boolean direct;
+
+    private final int writers;
+
+    private final ExecutorService executor;
+
+    private final Completion completion;
+
+    private final LongSummaryStatistics statistics = new LongSummaryStatistics();
+
+    private volatile Exception failure;
+
+    private boolean stopped;
+
+    /**
+     * Constructs a new pipeline and starts its writer stages.
+     *
+     * @param buffers    the number of buffers of the ring
+     * @param bufferSize the size of the buffers
+     * @param writers    the number of writer stages
+     * @param target     the target opening the destination files
+     * @param direct     {@code true} to allocate direct buffers
+     * @param completion the receiver of completion notifications
+     */
+    UnpackPipeline(int buffers, int bufferSize, int writers, DirectoryTarget target, boolean direct,
+            Completion completion) {
+        super();
+        if (buffers < 1) {
+            throw new IllegalArgumentException("Invalid number of buffers: " + buffers);
+        }
+        this.ring = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            ring.add(direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize));
+        }
+        this.target = target;
+        this.direct = direct;
+        this.writers = writers;
+        this.completion = completion;
+        this.executor = ParallelTasks.newExecutor(writers);
+        for (int i = 0; i < writers; i++) {
+            executor.execute(this::write);
+        }
+    }
+
+    /**
+     * Reads the specified SQC file into the pipeline. The method returns when
+     * the whole content is handed over to the writer stages.
+     *
+     * @param sqcFile  the SQC file
+     * @param destFile the destination file
+     * @throws IOException if an I/O error occurs while reading or a writer stage
+     *                     failed
+     */
+    void unpack(SqcFile sqcFile, Path destFile) throws IOException {
+        checkFailure();
+        Output output = new Output(sqcFile, destFile);
+        try {
+            output.channel = target.create(destFile, sqcFile.getSize());
+            InputStream stream = sqcFile.getStream();
+            ReadableByteChannel in = channel(stream, direct);
+            long position = 0;
+            while (true) {
+                checkFailure();
+                ByteBuffer buffer = take();
+                boolean handedOver = false;
+                try {
+                    buffer.clear();
+                    if (fill(stream, in, buffer) == 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    int len = buffer.remaining();
+                    output.pending.incrementAndGet();
+                    chunks.add(new Chunk(output, buffer, position));
+                    handedOver = true;
+                    position += len;
+                } finally {
+                    if (!handedOver) {
+                        ring.add(buffer);
+                    }
+                }
+            }
+            if (position < output.channel.size()) {
+                // all chunks lie below the position, so they are not cut off
+                output.channel.truncate(position);
+            }
+        } catch (IOException e) {
+            output.fail(e);
+            throw e;
+        } finally {
+            output.release();
+        }
+    }
+
+    private static ReadableByteChannel channel(InputStream stream, boolean direct) {
+        if (stream instanceof ReadableByteChannel) {
+            return (ReadableByteChannel) stream;
+        } else if (direct) {
+            return Channels.newChannel(stream);
+        } else {
+            return null;
+        }
+    }
+
+    private static int fill(InputStream stream, ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int len;
+            if (in != null) {
+                len = in.read(buffer);
+            } else {
+                len = stream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (len > 0) {
+                    buffer.position(buffer.position() + len);
+                }
+            }
+            if (len == -1) {
+                break;
+            }
+            total += len;
+        }
+        return total;
+    }
+
+    private ByteBuffer take() throws IOException {
+        try {
+            return ring.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Unpacking interrupted");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Exception e = failure;
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e != null) {
+            throw (IOException) e;
+        }
+    }
+
+    private synchronized void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void write() {
+        try {
+            for (Chunk chunk = chunks.take(); chunk != END; chunk = chunks.take()) {
+                Output output = chunk.output;
+                try {
+                    try {
+                        if (output.error == null) {
+                            ByteBuffer buffer = chunk.buffer;
+                            long position = chunk.position;
+                            while (buffer.hasRemaining()) {
+                                position += output.channel.write(buffer, position);
+                            }
+                            output.bytes.addAndGet(chunk.buffer.limit());
+                        }
+                    } catch (IOException e) {
+                        output.fail(e);
+                    } finally {
+                        ring.add(chunk.buffer);
+                        output.release();
+                    }
+                } catch (RuntimeException e) {
+                    // a failing listener must not stop the stage, or the reader would wait for buffers forever
+                    fail(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the writer stages write all SQC files read so far and stops
+     * them.
+     *
+     * @return the statistics of bytes written per SQC file
+     * @throws IOException if an I/O error occurred in a writer stage
+     */
+    LongSummaryStatistics finish() throws IOException {
+        stop();
+        checkFailure();
+        synchronized (statistics) {
+            return statistics;
+        }
+    }
+
+    private void stop() throws IOException {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        for (int i = 0; i < writers; i++) {
+            chunks.add(END);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Unpacking interrupted");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+    }
+
+    private static final class Chunk {
+
+        private final Output output;
+
+        private final ByteBuffer buffer;
+
+        private final long position;
+
+        private Chunk(Output output, ByteBuffer buffer, long position) {
+            this.output = output;
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+    }
+
+    private final class Output {
+
+        private final SqcFile sqcFile;
+
+        private final Path file;
+
+        private FileChannel channel;
+
+        private final long start = System.nanoTime();
+
+        /** Number of chunks not written yet plus one while the reader fills the file. */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private volatile IOException error;
+
+        private Output(SqcFile sqcFile, Path file) {
+            this.sqcFile = sqcFile;
+            this.file = file;
+        }
+
+        private synchronized void fail(IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() > 0) {
+                return;
+            }
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            long nanos = System.nanoTime() - start;
+            if (error == null) {
+                synchronized (statistics) {
+                    statistics.accept(bytes.get());
+                }
+                completion.completed(new UnpackerEvent(file, sqcFile, 1, bytes.get(), nanos, null));
+            } else {
+                UnpackPipeline.this.fail(error);
+                completion.completed(new UnpackerEvent(file, sqcFile, 0, bytes.get(), nanos, error));
+            }
+        }
+
+    }
+
+}
@@ -21,19 +21,23 @@ SOFTWARE.
 ****************************************************************************** */
 package sqcb.unpacker;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import sqcb.unpacker.io.ExtensionPredicate;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 /**
  * Unpacks SQCB files.
@@ -46,20 +50,65 @@ public class Unpacker {
     /** Default buffer size (16 kB) */
     public static final int DEFAULT_BUFFER_SIZE = 16384;
 
+    /** Default number of threads (1) */
+    public static final int DEFAULT_THREADS = 1;
+
     private final int bufferSize;
 
+    private final int threads;
+
     private final List<UnpackerListener> listeners;
 
+    private final Object listenerLock = new Object();
+
+    private Predicate<? super SqcRecord> filter = record -> true;
+
+    private boolean incremental;
+
+    private boolean checksums;
+
+    private boolean sha256;
+
+    private int pipelineBuffers;
+
+    private boolean largestFirst;
+
+    private ExtractionTarget target;
+
     /**
-     * Constructs a new unpacker with the specified buffer size and listeners.
+     * Constructs a new unpacker with the specified buffer size, number of threads
+     * and listeners.
+     * <p>
+     * If the number of threads is greater than one, SQCB files found in a
+     * directory are unpacked concurrently and SQC files of a single SQCB file
+     * are unpacked in parallel. On Java 21 and later, the unpacking runs on
+     * virtual threads. The listeners are never called concurrently, however,
+     * calls for different SQCB files may interleave.
      *
      * @param bufferSize the buffer size
+     * @param threads    the number of threads
      * @param listeners  the listeners
      */
-    public Unpacker(int bufferSize, List<UnpackerListener> listeners) {
+    public Unpacker(int bufferSize, int threads, List<UnpackerListener> listeners) {
         super();
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
         this.bufferSize = bufferSize;
+        this.threads = threads;
         this.listeners = listeners;
+        this.target = new DirectoryTarget(bufferSize);
+    }
+
+    /**
+     * Constructs a new unpacker with the specified buffer size and listeners.
+     *
+     * @param bufferSize the buffer size
+     * @param listeners  the listeners
+     * @see #DEFAULT_THREADS
+     */
+    public Unpacker(int bufferSize, List<UnpackerListener> listeners) {
+        this(bufferSize, DEFAULT_THREADS, listeners);
     }
 
     /**
@@ -69,7 +118,7 @@ public class Unpacker {
      * @see #DEFAULT_BUFFER_SIZE
      */
     public Unpacker(List<UnpackerListener> listeners) {
-        this(DEFAULT_BUFFER_SIZE, listeners);
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_THREADS, listeners);
     }
 
     /**
@@ -78,7 +127,191 @@ public class Unpacker {
      * @see #DEFAULT_BUFFER_SIZE
      */
     public Unpacker() {
-        this(DEFAULT_BUFFER_SIZE, Collections.emptyList());
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_THREADS, Collections.emptyList());
+    }
+
+    /**
+     * Returns the number of threads used for unpacking.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the filter of SQC files to unpack.
+     *
+     * @return the filter
+     */
+    public Predicate<? super SqcRecord> getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the filter of SQC files to unpack. SQC files not accepted by the
+     * filter are skipped without being read. By default, all SQC files are
+     * unpacked.
+     *
+     * @param filter the filter
+     * @see RecordFilter
+     */
+    public void setFilter(Predicate<? super SqcRecord> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Tells whether SQCB files are unpacked incrementally.
+     *
+     * @return {@code true} if unchanged SQC files are skipped
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets whether SQCB files are unpacked incrementally. In the incremental
+     * mode, a manifest is kept next to each unpacked SQCB file and only SQC files
+     * that changed since the previous run, or whose unpacked files are missing,
+     * are written. Without a manifest, SQC files are compared with the existing
+     * unpacked files. This applies to SQCB files unpacked from paths only.
+     *
+     * @param incremental {@code true} to skip unchanged SQC files
+     * @see SqcManifest
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Tells whether checksums of the unpacked SQC files are recorded.
+     *
+     * @return {@code true} if checksums are recorded
+     */
+    public boolean isChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Sets whether checksums of the unpacked SQC files are recorded. The
+     * CRC-32C of each SQC file is computed while its content is copied and
+     * recorded in the manifest kept next to the SQCB file, so that the unpacked
+     * files can be verified later without reading the SQCB file again. This
+     * applies to SQCB files unpacked from paths into directories only.
+     *
+     * @param checksums {@code true} to record checksums
+     * @see SqcManifest
+     * @see SqcVerifier
+     */
+    public void setChecksums(boolean checksums) {
+        this.checksums = checksums;
+    }
+
+    /**
+     * Tells whether SHA-256 digests are recorded along with the checksums.
+     *
+     * @return {@code true} if SHA-256 digests are recorded
+     */
+    public boolean isSha256() {
+        return sha256;
+    }
+
+    /**
+     * Sets whether SHA-256 digests of the unpacked SQC files are recorded along
+     * with the checksums. The digests are computed in the same pass as the
+     * checksums, but take considerably more processor time.
+     *
+     * @param sha256 {@code true} to record SHA-256 digests
+     */
+    public void setSha256(boolean sha256) {
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Returns the number of buffers of the unpacking pipeline.
+     *
+     * @return the number of buffers or {@code 0} if the pipeline is disabled
+     */
+    public int getPipelineBuffers() {
+        return pipelineBuffers;
+    }
+
+    /**
+     * Sets the number of buffers of the unpacking pipeline. If the number is
+     * positive, SQC files unpacked sequentially are read by the calling thread
+     * into a ring of that many buffers of the buffer size while writer threads
+     * write the buffers into the destination files, so that reading and writing
+     * overlap. The memory used is bounded by the number of buffers times the
+     * buffer size. A SQCB stream is written by as many writer threads as this
+     * unpacker uses, a SQCB file by one. The pipeline writes the files itself,
+     * so it is used with a plain {@link DirectoryTarget} that does not force
+     * files only. By default, the pipeline is disabled.
+     *
+     * @param pipelineBuffers the number of buffers or {@code 0} to disable the
+     *                        pipeline
+     */
+    public void setPipelineBuffers(int pipelineBuffers) {
+        if (pipelineBuffers < 0) {
+            throw new IllegalArgumentException("Invalid number of buffers: " + pipelineBuffers);
+        }
+        this.pipelineBuffers = pipelineBuffers;
+    }
+
+    /**
+     * Tells whether the largest SQCB files found in directories are unpacked
+     * first.
+     *
+     * @return {@code true} if the largest SQCB files are unpacked first
+     */
+    public boolean isLargestFirst() {
+        return largestFirst;
+    }
+
+    /**
+     * Sets whether the largest SQCB files found in directories are unpacked
+     * first. SQCB files are unpacked while the directories are still being
+     * walked, so the order applies to the files found so far. Starting with the
+     * largest files keeps a single large file from being unpacked alone at the
+     * end of the run. This applies to SQCB files unpacked concurrently only. By
+     * default, SQCB files are unpacked in the order they are found.
+     *
+     * @param largestFirst {@code true} to unpack the largest SQCB files first
+     */
+    public void setLargestFirst(boolean largestFirst) {
+        this.largestFirst = largestFirst;
+    }
+
+    /**
+     * Returns the target the SQC files are written into.
+     *
+     * @return the target
+     */
+    public ExtractionTarget getTarget() {
+        return target;
+    }
+
+    /**
+     * Sets the target the SQC files are written into. By default, they are
+     * written into files by a {@link DirectoryTarget}. SQCB files are unpacked
+     * one by one into a sequential target, such as an archive. The pipeline and
+     * the incremental mode apply to a directory target only. The target is not
+     * closed by this unpacker.
+     *
+     * @param target the target
+     * @see MemoryTarget
+     * @see sqcb.unpacker.archive.ArchiveWriter
+     */
+    public void setTarget(ExtractionTarget target) {
+        this.target = target;
+    }
+
+    private boolean isDirectoryTarget() {
+        return target instanceof DirectoryTarget;
+    }
+
+    private boolean isPipelined() {
+        return pipelineBuffers > 0 && target.getClass() == DirectoryTarget.class
+                && ((DirectoryTarget) target).getDurability() == Durability.NONE;
     }
 
     /**
@@ -100,93 +333,383 @@ public class Unpacker {
 
     /**
      * Unpacks the source directory containing SQCB files.
+     * <p>
+     * SQCB files are unpacked as soon as they are found. If this unpacker uses
+     * more than one thread, subdirectories are walked concurrently and up to
+     * that many SQCB files are unpacked concurrently while the walk continues.
+     * All found files are then processed even if some of them fail. The
+     * failure of the first failed SQCB file in the order of their paths is
+     * rethrown with the failures of the other files and of the walk
+     * suppressed, so the outcome does not depend on scheduling.
      *
      * @param srcDirectory the source directory
      * @throws IOException if an I/O error occurs
      */
     public void unpackDirectory(Path srcDirectory) throws IOException {
-        ExtensionPredicate sqcbPredicate = new ExtensionPredicate(SQCB_EXTENSION);
-        try (Stream<Path> pathStream = Files.walk(srcDirectory)) {
-            List<Path> files = pathStream.filter(sqcbPredicate.and(Files::isRegularFile)).collect(Collectors.toList());
-            for (Path file : files) {
+        if (threads == 1 || target.isSequential()) {
+            BankDiscovery.walk(srcDirectory, (file, size) -> unpackFile(file));
+            return;
+        }
+        // the files are found in an order depending on scheduling, so the failures are ordered by path
+        Map<Path, IOException> failures = new ConcurrentSkipListMap<>();
+        IOException failure = null;
+        try (BankDiscovery discovery = new BankDiscovery(threads, largestFirst)) {
+            discovery.start(srcDirectory);
+            ExecutorService executor = ParallelTasks.newExecutor(threads);
+            try {
+                List<Future<Void>> futures = new ArrayList<>(threads);
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        unpackDiscovered(discovery, failures);
+                        return null;
+                    }));
+                }
+                awaitAll(futures);
+            } finally {
+                executor.shutdownNow();
+            }
+            for (IOException e : failures.values()) {
+                failure = addFailure(failure, e);
+            }
+            try {
+                discovery.checkFailure();
+            } catch (IOException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void unpackDiscovered(BankDiscovery discovery, Map<Path, IOException> failures) throws IOException {
+        for (Path file; (file = discovery.take()) != null;) {
+            try {
+                unpackFile(file, false);
+            } catch (IOException e) {
+                failures.put(file, e);
+            }
+        }
+    }
+
+    /**
+     * Finds SQCB files contained in the specified directory and its
+     * subdirectories.
+     *
+     * @param srcDirectory the source directory
+     * @return the SQCB files
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<Path> findFiles(Path srcDirectory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        BankDiscovery.walk(srcDirectory, (file, size) -> files.add(file));
+        return files;
+    }
+
+    /**
+     * Unpacks the source SQCB files.
+     * <p>
+     * The files are unpacked concurrently if this unpacker uses more than one
+     * thread. All files are processed even if some of them fail; the first
+     * failure in the order of the given list is then rethrown with the other
+     * ones suppressed.
+     *
+     * @param srcFiles the SQCB files
+     * @throws IOException if an I/O error occurs
+     */
+    public void unpackFiles(List<Path> srcFiles) throws IOException {
+        if (threads == 1 || srcFiles.size() < 2 || target.isSequential()) {
+            for (Path file : srcFiles) {
                 unpackFile(file);
             }
+            return;
+        }
+        ExecutorService executor = ParallelTasks.newExecutor(Math.min(threads, srcFiles.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(srcFiles.size());
+            for (Path file : srcFiles) {
+                futures.add(executor.submit(() -> {
+                    unpackFile(file, false);
+                    return null;
+                }));
+            }
+            awaitAll(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws IOException {
+        IOException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Unpacking interrupted");
+            } catch (ExecutionException e) {
+                failure = addFailure(failure, asIOException(e.getCause()));
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static IOException addFailure(IOException failure, IOException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    private static IOException asIOException(Throwable throwable) {
+        if (throwable instanceof IOException) {
+            return (IOException) throwable;
+        } else if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        } else {
+            return new IOException(throwable);
         }
     }
 
     /**
      * Unpacks the source SQCB file.
+     * <p>
+     * If this unpacker uses more than one thread, the SQC files are unpacked in
+     * parallel on the common fork/join pool, or on Java 21 and later on up to
+     * that many virtual threads.
      *
      * @param srcFile the SQCB file
      * @throws IOException if an I/O error occurs
      */
     public void unpackFile(Path srcFile) throws IOException {
+        unpackFile(srcFile, threads > 1 && !target.isSequential());
+    }
+
+    private void unpackFile(Path srcFile, boolean parallel) throws IOException {
         Path directory = srcFile.getParent();
         notifyBeforeSqcb(srcFile);
-        try (InputStream stream = Files.newInputStream(srcFile)) {
-            try (BufferedInputStream bufferedStream = new BufferedInputStream(stream)) {
-                unpackStream(bufferedStream, directory);
+        long start = System.nanoTime();
+        LongSummaryStatistics statistics;
+        try (SqcChannelBank bank = new SqcChannelBank(srcFile)) {
+            SqcManifest manifest = (incremental || checksums) && isDirectoryTarget() ? SqcManifest.of(srcFile) : null;
+            SqcManifest previous = manifest != null ? SqcManifest.read(SqcManifest.getFile(srcFile)) : null;
+            IncrementalCheck check = incremental && isDirectoryTarget()
+                    ? new IncrementalCheck(bank.getChannel(), directory, bufferSize, previous, manifest)
+                    : null;
+            SqcManifest checksumManifest = checksums ? manifest : null;
+            if (parallel) {
+                statistics = unpackParallel(bank, directory, check, checksumManifest);
+            } else if (isPipelined()) {
+                try (UnpackPipeline pipeline = newPipeline(1, true)) {
+                    for (SqcRecord record : bank.getRecords()) {
+                        if (isSelected(record, check)) {
+                            Path file = DirectoryTarget.resolve(directory, record.getName());
+                            notifyBeforeSqc(file);
+                            if (checksumManifest != null) {
+                                ContentChecksum checksum = new ContentChecksum(sha256);
+                                pipeline.unpack(checksum.wrap(bank.getFile(record)), file);
+                                checksumManifest.put(checksum.toEntry(record));
+                            } else {
+                                pipeline.unpack(bank.getFile(record), file);
+                            }
+                        }
+                    }
+                    statistics = pipeline.finish();
+                }
+            } else {
+                statistics = new LongSummaryStatistics();
+                for (SqcRecord record : bank.getRecords()) {
+                    if (isSelected(record, check)) {
+                        Path file = DirectoryTarget.resolve(directory, record.getName());
+                        statistics.accept(unpackSqc(bank.getFile(record), file, checksumManifest));
+                    }
+                }
+            }
+            target.finishBank();
+            if (manifest != null) {
+                // SQC files skipped by the filter keep their entries
+                manifest.carryOver(previous, bank.getRecords());
+                manifest.write(SqcManifest.getFile(srcFile));
             }
+        } catch (IOException e) {
+            notifyFailed(new UnpackerEvent(srcFile, null, 0, 0, System.nanoTime() - start, e));
+            throw e;
         }
         notifyAfterSqcb(srcFile);
+        notifySqcbUnpacked(new UnpackerEvent(srcFile, null, (int) statistics.getCount(), statistics.getSum(),
+                System.nanoTime() - start, null));
+    }
+
+    private boolean isSelected(SqcRecord record, IncrementalCheck check) throws IOException {
+        return filter.test(record) && (check == null || check.isChanged(record));
+    }
+
+    private LongSummaryStatistics unpackParallel(SqcChannelBank bank, Path destDirectory, IncrementalCheck check,
+            SqcManifest checksumManifest) throws IOException {
+        try {
+            return ParallelTasks.sum(bank.files(), threads, sqcFile -> {
+                try {
+                    return isSelected(sqcFile, check);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, sqcFile -> {
+                try {
+                    Path file = DirectoryTarget.resolve(destDirectory, sqcFile.getName());
+                    return unpackSqc(sqcFile, file, checksumManifest);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
      * Unpacks a given stream containing a SQCB file into the specified directory.
+     * <p>
+     * SQC files not accepted by the filter are skipped using
+     * {@link InputStream#skip(long)} of the given stream.
      *
      * @param stream        the stream containing a SQCB file
      * @param destDirectory the destination directory
      * @throws IOException if an I/O error occurs
      */
     public void unpackStream(InputStream stream, Path destDirectory) throws IOException {
+        if (isPipelined()) {
+            try (SqcBank bank = new SqcBank(stream); UnpackPipeline pipeline = newPipeline(threads, false)) {
+                while (bank.hasNext()) {
+                    SqcFile sqcFile = bank.next();
+                    if (filter.test(sqcFile)) {
+                        Path file = DirectoryTarget.resolve(destDirectory, sqcFile.getName());
+                        notifyBeforeSqc(file);
+                        pipeline.unpack(sqcFile, file);
+                    }
+                }
+                pipeline.finish();
+            }
+            target.finishBank();
+            return;
+        }
         try (SqcBank bank = new SqcBank(stream)) {
             while (bank.hasNext()) {
                 SqcFile sqcFile = bank.next();
-                Path file = destDirectory.resolve(sqcFile.getName());
-                unpackFile(sqcFile, file);
+                if (filter.test(sqcFile)) {
+                    Path file = DirectoryTarget.resolve(destDirectory, sqcFile.getName());
+                    unpackFile(sqcFile, file);
+                }
             }
         }
+        target.finishBank();
+    }
+
+    private UnpackPipeline newPipeline(int writers, boolean direct) {
+        UnpackPipeline.Completion completion = event -> {
+            if (event.getError() == null) {
+                notifyAfterSqc(event.getFile());
+                notifySqcUnpacked(event);
+            } else {
+                notifyFailed(event);
+            }
+        };
+        DirectoryTarget directoryTarget = (DirectoryTarget) target;
+        return new UnpackPipeline(pipelineBuffers, bufferSize, writers, directoryTarget,
+                direct || directoryTarget.isDirectBuffers(), completion);
     }
 
     /**
      * Unpacks a single SQC file.
+     * <p>
+     * The content is written into the target of this unpacker.
      *
      * @param sqcFile  the source SQC file
      * @param destFile the destination file
      * @throws IOException if an I/O error occurs
      */
     public void unpackFile(SqcFile sqcFile, Path destFile) throws IOException {
+        unpackSqc(sqcFile, destFile, null);
+    }
+
+    private long unpackSqc(SqcFile sqcFile, Path destFile, SqcManifest checksumManifest) throws IOException {
         notifyBeforeSqc(destFile);
-        try (OutputStream out = Files.newOutputStream(destFile)) {
-            byte[] block = new byte[bufferSize];
-            for (int len; (len = sqcFile.getStream().read(block)) != -1;) {
-                out.write(block, 0, len);
+        long start = System.nanoTime();
+        long bytes = 0;
+        try {
+            if (checksumManifest != null) {
+                ContentChecksum checksum = new ContentChecksum(sha256);
+                bytes = target.write(checksum.wrap(sqcFile), destFile);
+                checksumManifest.put(checksum.toEntry(sqcFile));
+            } else {
+                bytes = target.write(sqcFile, destFile);
             }
+        } catch (IOException e) {
+            notifyFailed(new UnpackerEvent(destFile, sqcFile, 0, bytes, System.nanoTime() - start, e));
+            throw e;
         }
         notifyAfterSqc(destFile);
+        notifySqcUnpacked(new UnpackerEvent(destFile, sqcFile, 1, bytes, System.nanoTime() - start, null));
+        return bytes;
     }
 
     protected void notifyBeforeSqcb(Path file) {
-        for (UnpackerListener listener : listeners) {
-            listener.beforeSqcb(file);
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.beforeSqcb(file);
+            }
         }
     }
 
     protected void notifyAfterSqcb(Path file) {
-        for (UnpackerListener listener : listeners) {
-            listener.afterSqcb(file);
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.afterSqcb(file);
+            }
         }
     }
 
     protected void notifyBeforeSqc(Path file) {
-        for (UnpackerListener listener : listeners) {
-            listener.beforeSqc(file);
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.beforeSqc(file);
+            }
         }
     }
 
     protected void notifyAfterSqc(Path file) {
-        for (UnpackerListener listener : listeners) {
-            listener.afterSqc(file);
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.afterSqc(file);
+            }
+        }
+    }
+
+    protected void notifySqcbUnpacked(UnpackerEvent event) {
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.sqcbUnpacked(event);
+            }
+        }
+    }
+
+    protected void notifySqcUnpacked(UnpackerEvent event) {
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.sqcUnpacked(event);
+            }
+        }
+    }
+
+    protected void notifyFailed(UnpackerEvent event) {
+        synchronized (listenerLock) {
+            for (UnpackerListener listener : listeners) {
+                listener.failed(event);
+            }
         }
     }
 
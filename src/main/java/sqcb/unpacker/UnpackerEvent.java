@@ -0,0 +1,121 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Represents an event of an unpacker operation carrying its metrics.
+ *
+ * @see UnpackerListener
+ */
+public class UnpackerEvent {
+
+    private final Path file;
+
+    private final SqcRecord record;
+
+    private final int files;
+
+    private final long bytes;
+
+    private final long nanos;
+
+    private final IOException error;
+
+    /**
+     * Constructs a new event.
+     *
+     * @param file   the SQCB file or the destination SQC file
+     * @param record the record of the SQC file or {@code null} for a SQCB file
+     * @param files  the number of SQC files unpacked
+     * @param bytes  the number of bytes written
+     * @param nanos  the elapsed time in nanoseconds
+     * @param error  the error or {@code null} if the operation succeeded
+     */
+    public UnpackerEvent(Path file, SqcRecord record, int files, long bytes, long nanos, IOException error) {
+        super();
+        this.file = file;
+        this.record = record;
+        this.files = files;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.error = error;
+    }
+
+    /**
+     * Returns the SQCB file or the destination SQC file.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the record of the SQC file.
+     *
+     * @return the record or {@code null} if the event is about a SQCB file
+     */
+    public SqcRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Returns the number of SQC files unpacked. It is {@code 1} for a
+     * successfully unpacked SQC file.
+     *
+     * @return the number of SQC files
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the elapsed time in nanoseconds.
+     *
+     * @return the elapsed time
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns the error that caused the operation to fail.
+     *
+     * @return the error or {@code null} if the operation succeeded
+     */
+    public IOException getError() {
+        return error;
+    }
+
+}
@@ -56,4 +56,30 @@ public interface UnpackerListener {
      */
     void afterSqc(Path file);
 
+    /**
+     * This method is called after a SQCB file is unpacked, right after
+     * {@link #afterSqcb(Path)}. The event carries the number of SQC files and
+     * bytes written and the time spent on the SQCB file.
+     *
+     * @param event the event
+     */
+    void sqcbUnpacked(UnpackerEvent event);
+
+    /**
+     * This method is called after a SQC file is unpacked, right after
+     * {@link #afterSqc(Path)}. The event carries the record of the SQC file, the
+     * number of bytes written and the time spent on the SQC file.
+     *
+     * @param event the event
+     */
+    void sqcUnpacked(UnpackerEvent event);
+
+    /**
+     * This method is called when unpacking of a SQCB file or a SQC file fails.
+     * The record of the event is {@code null} for a SQCB file.
+     *
+     * @param event the event carrying the error
+     */
+    void failed(UnpackerEvent event);
+
 }
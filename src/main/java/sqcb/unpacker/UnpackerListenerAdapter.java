@@ -48,4 +48,19 @@ public class UnpackerListenerAdapter implements UnpackerListener {
         /* Empty */
     }
 
+    @Override
+    public void sqcbUnpacked(UnpackerEvent event) {
+        /* Empty */
+    }
+
+    @Override
+    public void sqcUnpacked(UnpackerEvent event) {
+        /* Empty */
+    }
+
+    @Override
+    public void failed(UnpackerEvent event) {
+        /* Empty */
+    }
+
 }
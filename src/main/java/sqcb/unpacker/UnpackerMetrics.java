@@ -0,0 +1,323 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import sqcb.unpacker.io.Json;
+
+/**
+ * Implements a listener that collects metrics of unpacked files: totals,
+ * throughput, latency histograms and per-bank totals. The metrics can be
+ * written as JSON or in the Prometheus text exposition format.
+ */
+public class UnpackerMetrics extends UnpackerListenerAdapter {
+
+    /** Upper bounds of the latency histogram buckets in nanoseconds */
+    private static final long[] LATENCY_BOUNDS = { 10_000L, 50_000L, 100_000L, 500_000L, 1_000_000L, 5_000_000L,
+            10_000_000L, 50_000_000L, 100_000_000L, 500_000_000L, 1_000_000_000L, 5_000_000_000L };
+
+    private final Histogram sqcLatency = new Histogram();
+
+    private final Histogram sqcbLatency = new Histogram();
+
+    private final Map<Path, BankTotals> banks = new TreeMap<>();
+
+    private int sqcbCount;
+
+    private int sqcCount;
+
+    private long bytes;
+
+    private int failures;
+
+    private long firstStart = Long.MAX_VALUE;
+
+    private long lastEnd = Long.MIN_VALUE;
+
+    @Override
+    public synchronized void sqcbUnpacked(UnpackerEvent event) {
+        sqcbCount++;
+        sqcbLatency.add(event.getNanos());
+        BankTotals totals = bank(event.getFile());
+        totals.files = event.getFiles();
+        totals.bytes = event.getBytes();
+        totals.nanos = event.getNanos();
+        updateElapsed(event);
+    }
+
+    @Override
+    public synchronized void sqcUnpacked(UnpackerEvent event) {
+        sqcCount++;
+        bytes += event.getBytes();
+        sqcLatency.add(event.getNanos());
+        updateElapsed(event);
+    }
+
+    @Override
+    public synchronized void failed(UnpackerEvent event) {
+        if (event.getRecord() == null) {
+            BankTotals totals = bank(event.getFile());
+            totals.nanos = event.getNanos();
+            totals.error = event.getError().toString();
+        } else {
+            failures++;
+        }
+        updateElapsed(event);
+    }
+
+    private BankTotals bank(Path file) {
+        return banks.computeIfAbsent(file, f -> new BankTotals());
+    }
+
+    private void updateElapsed(UnpackerEvent event) {
+        long end = System.nanoTime();
+        firstStart = Math.min(firstStart, end - event.getNanos());
+        lastEnd = Math.max(lastEnd, end);
+    }
+
+    /**
+     * Returns the number of unpacked SQCB files.
+     *
+     * @return the number of unpacked SQCB files
+     */
+    public synchronized int getSqcbCount() {
+        return sqcbCount;
+    }
+
+    /**
+     * Returns the number of unpacked SQC files.
+     *
+     * @return the number of unpacked SQC files
+     */
+    public synchronized int getSqcCount() {
+        return sqcCount;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of SQC files that failed to unpack.
+     *
+     * @return the number of failures
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the time elapsed between the start of the first and the end of
+     * the last observed operation.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public synchronized long getElapsedNanos() {
+        return lastEnd < firstStart ? 0 : lastEnd - firstStart;
+    }
+
+    /**
+     * Returns the throughput, i.e. the number of bytes written per second of
+     * the elapsed time.
+     *
+     * @return the throughput in bytes per second
+     */
+    public synchronized double getBytesPerSecond() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0 : bytes * 1e9 / elapsed;
+    }
+
+    /**
+     * Writes the metrics into the specified file. The metrics are written as
+     * JSON if the file name ends with {@code .json}, or in the Prometheus text
+     * format otherwise.
+     *
+     * @param file the file
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().endsWith(".json")) {
+                writeJson(writer);
+            } else {
+                writePrometheus(writer);
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics as JSON.
+     *
+     * @param writer the writer
+     */
+    public synchronized void writeJson(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("{");
+        out.println("  \"sqcbFiles\": " + sqcbCount + ",");
+        out.println("  \"sqcFiles\": " + sqcCount + ",");
+        out.println("  \"bytes\": " + bytes + ",");
+        out.println("  \"failures\": " + failures + ",");
+        out.println("  \"elapsedNanos\": " + getElapsedNanos() + ",");
+        out.println("  \"bytesPerSecond\": " + format(getBytesPerSecond()) + ",");
+        out.println("  \"sqcLatency\": " + sqcLatency.toJson() + ",");
+        out.println("  \"sqcbLatency\": " + sqcbLatency.toJson() + ",");
+        out.println("  \"banks\": [");
+        int i = 0;
+        for (Map.Entry<Path, BankTotals> entry : banks.entrySet()) {
+            BankTotals totals = entry.getValue();
+            out.print("    {\"file\": " + Json.quote(entry.getKey().toString()) + ", \"files\": " + totals.files
+                    + ", \"bytes\": " + totals.bytes + ", \"nanos\": " + totals.nanos);
+            if (totals.error != null) {
+                out.print(", \"error\": " + Json.quote(totals.error));
+            }
+            out.println("}" + (++i < banks.size() ? "," : ""));
+        }
+        out.println("  ]");
+        out.println("}");
+        out.flush();
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     *
+     * @param writer the writer
+     */
+    public synchronized void writePrometheus(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        counter(out, "sqcb_unpacker_sqcb_files_total", "Number of unpacked SQCB files.", sqcbCount);
+        counter(out, "sqcb_unpacker_sqc_files_total", "Number of unpacked SQC files.", sqcCount);
+        counter(out, "sqcb_unpacker_bytes_total", "Number of bytes written.", bytes);
+        counter(out, "sqcb_unpacker_failures_total", "Number of SQC files that failed to unpack.", failures);
+        out.print("# HELP sqcb_unpacker_elapsed_seconds Time elapsed by unpacking.\n");
+        out.print("# TYPE sqcb_unpacker_elapsed_seconds gauge\n");
+        out.print("sqcb_unpacker_elapsed_seconds " + format(getElapsedNanos() / 1e9) + "\n");
+        out.print("# HELP sqcb_unpacker_bytes_per_second Number of bytes written per second.\n");
+        out.print("# TYPE sqcb_unpacker_bytes_per_second gauge\n");
+        out.print("sqcb_unpacker_bytes_per_second " + format(getBytesPerSecond()) + "\n");
+        sqcLatency.writePrometheus(out, "sqcb_unpacker_sqc_duration_seconds", "Time spent unpacking a SQC file.");
+        sqcbLatency.writePrometheus(out, "sqcb_unpacker_sqcb_duration_seconds", "Time spent unpacking a SQCB file.");
+        out.print("# HELP sqcb_unpacker_bank_bytes Number of bytes written per SQCB file.\n");
+        out.print("# TYPE sqcb_unpacker_bank_bytes gauge\n");
+        for (Map.Entry<Path, BankTotals> entry : banks.entrySet()) {
+            out.print("sqcb_unpacker_bank_bytes{bank=" + label(entry.getKey()) + "} " + entry.getValue().bytes + "\n");
+        }
+        out.print("# HELP sqcb_unpacker_bank_files Number of SQC files unpacked per SQCB file.\n");
+        out.print("# TYPE sqcb_unpacker_bank_files gauge\n");
+        for (Map.Entry<Path, BankTotals> entry : banks.entrySet()) {
+            out.print("sqcb_unpacker_bank_files{bank=" + label(entry.getKey()) + "} " + entry.getValue().files + "\n");
+        }
+        out.print("# HELP sqcb_unpacker_bank_duration_seconds Time spent unpacking per SQCB file.\n");
+        out.print("# TYPE sqcb_unpacker_bank_duration_seconds gauge\n");
+        for (Map.Entry<Path, BankTotals> entry : banks.entrySet()) {
+            out.print("sqcb_unpacker_bank_duration_seconds{bank=" + label(entry.getKey()) + "} "
+                    + format(entry.getValue().nanos / 1e9) + "\n");
+        }
+        out.flush();
+    }
+
+    private static void counter(PrintWriter out, String name, String help, long value) {
+        out.print("# HELP " + name + " " + help + "\n");
+        out.print("# TYPE " + name + " counter\n");
+        out.print(name + " " + value + "\n");
+    }
+
+    private static String label(Path file) {
+        String value = file.toString().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "\"" + value + "\"";
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.9g", value);
+    }
+
+    private static class BankTotals {
+
+        private int files;
+
+        private long bytes;
+
+        private long nanos;
+
+        private String error;
+
+    }
+
+    private static class Histogram {
+
+        private final long[] counts = new long[LATENCY_BOUNDS.length + 1];
+
+        private long count;
+
+        private long sum;
+
+        void add(long nanos) {
+            int i = 0;
+            while (i < LATENCY_BOUNDS.length && nanos > LATENCY_BOUNDS[i]) {
+                i++;
+            }
+            counts[i]++;
+            count++;
+            sum += nanos;
+        }
+
+        String toJson() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("{\"count\": ").append(count).append(", \"sumNanos\": ").append(sum);
+            builder.append(", \"buckets\": [");
+            for (int i = 0; i < counts.length; i++) {
+                builder.append(i > 0 ? ", " : "").append("{\"leNanos\": ");
+                builder.append(i < LATENCY_BOUNDS.length ? Long.toString(LATENCY_BOUNDS[i]) : "null");
+                builder.append(", \"count\": ").append(counts[i]).append('}');
+            }
+            return builder.append("]}").toString();
+        }
+
+        void writePrometheus(PrintWriter out, String name, String help) {
+            out.print("# HELP " + name + " " + help + "\n");
+            out.print("# TYPE " + name + " histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < LATENCY_BOUNDS.length ? format(LATENCY_BOUNDS[i] / 1e9) : "+Inf";
+                out.print(name + "_bucket{le=\"" + le + "\"} " + cumulative + "\n");
+            }
+            out.print(name + "_sum " + format(sum / 1e9) + "\n");
+            out.print(name + "_count " + count + "\n");
+        }
+
+    }
+
+}
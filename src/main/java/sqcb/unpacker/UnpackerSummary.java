@@ -0,0 +1,75 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implements a listener that counts unpacked files and prints a summary of
+ * them.
+ */
+public class UnpackerSummary extends UnpackerListenerAdapter {
+
+    private final AtomicInteger sqcbCount = new AtomicInteger();
+
+    private final AtomicInteger sqcCount = new AtomicInteger();
+
+    @Override
+    public void afterSqcb(Path file) {
+        sqcbCount.incrementAndGet();
+    }
+
+    @Override
+    public void afterSqc(Path file) {
+        sqcCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of unpacked SQCB files.
+     *
+     * @return the number of unpacked SQCB files
+     */
+    public int getSqcbCount() {
+        return sqcbCount.get();
+    }
+
+    /**
+     * Returns the number of unpacked SQC files.
+     *
+     * @return the number of unpacked SQC files
+     */
+    public int getSqcCount() {
+        return sqcCount.get();
+    }
+
+    /**
+     * Prints the summary into the specified print stream.
+     *
+     * @param out the output print stream
+     */
+    public void print(PrintStream out) {
+        out.println("Unpacked " + getSqcbCount() + " SQCB file(s) containing " + getSqcCount() + " SQC file(s)");
+    }
+
+}
@@ -0,0 +1,60 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formats of archives.
+ */
+public enum ArchiveFormat {
+
+    /** Uncompressed TAR (*.tar) */
+    TAR,
+
+    /** TAR compressed by gzip (*.tar.gz, *.tgz) */
+    TAR_GZ,
+
+    /** ZIP with DEFLATE compressed entries (*.zip) */
+    ZIP;
+
+    /**
+     * Returns the format of the specified archive file by its extension.
+     *
+     * @param file the archive file
+     * @return the format
+     * @throws IllegalArgumentException if the extension is not known
+     */
+    public static ArchiveFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip")) {
+            return ZIP;
+        } else if (name.endsWith(".tar")) {
+            return TAR;
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return TAR_GZ;
+        }
+        throw new IllegalArgumentException("Unknown archive format: " + file);
+    }
+
+}
@@ -0,0 +1,245 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sqcb.unpacker.ExtractionTarget;
+import sqcb.unpacker.SqcFile;
+
+/**
+ * Writes files into a single archive stream.
+ * <p>
+ * Entries are written sequentially in the order in which they are put.
+ * Compression of the archive or of its entries may run on several threads.
+ * Paths of the entries are relative to a base directory.
+ * <p>
+ * As an extraction target, the writer puts each unpacked SQC file as an entry
+ * named by its destination path.
+ */
+public abstract class ArchiveWriter implements ExtractionTarget {
+
+    private final Path baseDirectory;
+
+    private final ExecutorService executor;
+
+    private final int threads;
+
+    private final long modified = System.currentTimeMillis();
+
+    /**
+     * Constructs a new archive writer.
+     *
+     * @param baseDirectory the base directory of entry paths
+     * @param threads       the number of compression threads
+     */
+    protected ArchiveWriter(Path baseDirectory, int threads) {
+        super();
+        this.baseDirectory = baseDirectory.toAbsolutePath().normalize();
+        this.threads = threads;
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    /**
+     * Creates a writer of the specified archive file. The format is chosen by
+     * the file extension.
+     *
+     * @param file          the archive file
+     * @param baseDirectory the base directory of entry paths
+     * @param threads       the number of compression threads
+     * @return the archive writer
+     * @throws IOException if an I/O error occurs
+     * @see ArchiveFormat#of(Path)
+     */
+    public static ArchiveWriter open(Path file, Path baseDirectory, int threads) throws IOException {
+        ArchiveFormat format = ArchiveFormat.of(file);
+        return open(new BufferedOutputStream(Files.newOutputStream(file), 65536), format, baseDirectory, threads);
+    }
+
+    /**
+     * Creates a writer of an archive of the specified format.
+     *
+     * @param out           the stream to write the archive into; it is closed
+     *                      when the writer is closed
+     * @param format        the archive format
+     * @param baseDirectory the base directory of entry paths
+     * @param threads       the number of compression threads
+     * @return the archive writer
+     * @throws IOException if an I/O error occurs
+     */
+    public static ArchiveWriter open(OutputStream out, ArchiveFormat format, Path baseDirectory, int threads)
+            throws IOException {
+        switch (format) {
+        case ZIP:
+            return new ZipArchiveWriter(out, baseDirectory, threads);
+        case TAR_GZ:
+            return new TarArchiveWriter(out, true, baseDirectory, threads);
+        default:
+            return new TarArchiveWriter(out, false, baseDirectory, threads);
+        }
+    }
+
+    @Override
+    public long write(SqcFile sqcFile, Path destFile) throws IOException {
+        return putEntry(destFile, sqcFile.getSize(), sqcFile.getStream());
+    }
+
+    @Override
+    public boolean isSequential() {
+        return true;
+    }
+
+    /**
+     * Writes an entry for the specified file.
+     *
+     * @param file    the file; its path relative to the base directory is the
+     *                name of the entry
+     * @param size    the size of the content
+     * @param content the stream with the content
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs or the content is shorter than
+     *                     the size
+     */
+    public synchronized long putEntry(Path file, long size, InputStream content) throws IOException {
+        return putEntry(getEntryName(file), size, content);
+    }
+
+    /**
+     * Writes an entry.
+     *
+     * @param name    the name of the entry
+     * @param size    the size of the content
+     * @param content the stream with the content
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs or the content is shorter than
+     *                     the size
+     */
+    public synchronized long putEntry(String name, long size, InputStream content) throws IOException {
+        return writeEntry(name, size, content);
+    }
+
+    /**
+     * Writes an entry. Calls of this method are serialized.
+     *
+     * @param name    the name of the entry
+     * @param size    the size of the content
+     * @param content the stream with the content
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs or the content is shorter than
+     *                     the size
+     */
+    protected abstract long writeEntry(String name, long size, InputStream content) throws IOException;
+
+    /**
+     * Returns the name of the entry for the specified file: its path relative
+     * to the base directory with forward slashes, or its path without root if it
+     * is outside the base directory.
+     *
+     * @param file the file
+     * @return the entry name
+     */
+    public String getEntryName(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        if (path.startsWith(baseDirectory)) {
+            path = baseDirectory.relativize(path);
+        } else if (path.getRoot() != null) {
+            path = path.getRoot().relativize(path);
+        }
+        StringBuilder name = new StringBuilder();
+        for (Path element : path) {
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(element);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the executor compressing data.
+     *
+     * @return the executor or {@code null} if data is compressed in the calling
+     *         thread
+     */
+    protected ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the number of compression threads.
+     *
+     * @return the number of threads
+     */
+    protected int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the modification time of the entries.
+     *
+     * @return the modification time in milliseconds
+     */
+    protected long getModified() {
+        return modified;
+    }
+
+    /**
+     * Copies exactly the specified number of bytes.
+     *
+     * @param in     the input stream
+     * @param out    the output stream
+     * @param size   the number of bytes
+     * @param buffer the buffer
+     * @throws IOException if an I/O error occurs or the input stream ends early
+     */
+    protected static void copy(InputStream in, OutputStream out, long size, byte[] buffer) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            int len = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (len == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            out.write(buffer, 0, len);
+            remaining -= len;
+        }
+    }
+
+    /**
+     * Finishes the archive and closes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+}
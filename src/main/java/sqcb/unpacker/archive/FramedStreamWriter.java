@@ -0,0 +1,81 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Writes files into a simple framed stream suitable for piping into other
+ * tools, such as the standard output.
+ * <p>
+ * Each file is written as a frame consisting of the length of its name (4-byte
+ * big-endian integer), the name (UTF-8), the length of its content (8-byte
+ * big-endian integer) and the content. The stream ends with a frame with an
+ * empty name and no content length.
+ */
+public class FramedStreamWriter extends ArchiveWriter {
+
+    private final DataOutputStream out;
+
+    private final byte[] buffer = new byte[65536];
+
+    /**
+     * Constructs a new framed stream writer.
+     *
+     * @param out           the stream to write the frames into; it is closed
+     *                      when the writer is closed
+     * @param baseDirectory the base directory of file names
+     */
+    public FramedStreamWriter(OutputStream out, Path baseDirectory) {
+        super(baseDirectory, 1);
+        this.out = new DataOutputStream(out);
+    }
+
+    @Override
+    protected long writeEntry(String name, long size, InputStream content) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(nameBytes.length);
+        out.write(nameBytes);
+        out.writeLong(size);
+        copy(content, out, size, buffer);
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.writeInt(0);
+        } finally {
+            try {
+                out.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import sqcb.unpacker.io.ParallelDeflaterOutputStream;
+
+/**
+ * Writes files into a TAR archive in the POSIX (ustar/pax) format, optionally
+ * compressed by gzip.
+ * <p>
+ * The gzip stream is compressed on several threads if the writer uses more
+ * than one thread.
+ */
+public class TarArchiveWriter extends ArchiveWriter {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+
+    private final OutputStream target;
+
+    private final ParallelDeflaterOutputStream deflater;
+
+    private final OutputStream out;
+
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    private final byte[] buffer = new byte[65536];
+
+    private long bytesWritten;
+
+    /**
+     * Constructs a new TAR archive writer.
+     *
+     * @param out           the stream to write the archive into; it is closed
+     *                      when the writer is closed
+     * @param gzip          {@code true} to compress the archive by gzip
+     * @param baseDirectory the base directory of entry paths
+     * @param threads       the number of compression threads
+     * @throws IOException if an I/O error occurs
+     */
+    public TarArchiveWriter(OutputStream out, boolean gzip, Path baseDirectory, int threads) throws IOException {
+        super(baseDirectory, threads);
+        this.target = out;
+        if (gzip) {
+            long mtime = getModified() / 1000;
+            out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 0, (byte) mtime, (byte) (mtime >>> 8),
+                    (byte) (mtime >>> 16), (byte) (mtime >>> 24), 0, (byte) 0xff });
+            this.deflater = new ParallelDeflaterOutputStream(out, getExecutor(), threads);
+            this.out = deflater;
+        } else {
+            this.deflater = null;
+            this.out = out;
+        }
+    }
+
+    @Override
+    protected long writeEntry(String name, long size, InputStream content) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = split(nameBytes);
+        if (split < 0 || size > MAX_USTAR_SIZE) {
+            writePaxHeader(name, size);
+            writeHeader(Arrays.copyOf(nameBytes, Math.min(nameBytes.length, 100)), null, size, '0');
+        } else if (split == 0) {
+            writeHeader(nameBytes, null, size, '0');
+        } else {
+            writeHeader(Arrays.copyOfRange(nameBytes, split + 1, nameBytes.length),
+                    Arrays.copyOf(nameBytes, split), size, '0');
+        }
+        copy(content, out, size, buffer);
+        bytesWritten += size;
+        pad();
+        return size;
+    }
+
+    /**
+     * Returns 0 if the name fits the name field, the index of the slash
+     * splitting it into the prefix and name fields, or -1 if it does not fit.
+     */
+    private static int split(byte[] name) {
+        if (name.length <= 100) {
+            return 0;
+        }
+        for (int i = Math.min(name.length - 1, 155); i > 0; i--) {
+            if (name[i] == '/' && name.length - i - 1 <= 100) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void writePaxHeader(String name, long size) throws IOException {
+        StringBuilder records = new StringBuilder();
+        records.append(paxRecord("path", name));
+        if (size > MAX_USTAR_SIZE) {
+            records.append(paxRecord("size", Long.toString(size)));
+        }
+        byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+        writeHeader("PaxHeader".getBytes(StandardCharsets.US_ASCII), null, data.length, 'x');
+        out.write(data);
+        bytesWritten += data.length;
+        pad();
+    }
+
+    private static String paxRecord(String key, String value) {
+        int length = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int total = length + Integer.toString(length).length();
+        if (Integer.toString(total).length() > Integer.toString(length).length()) {
+            total++;
+        }
+        return total + " " + key + "=" + value + "\n";
+    }
+
+    private void writeHeader(byte[] name, byte[] prefix, long size, char type) throws IOException {
+        Arrays.fill(header, (byte) 0);
+        System.arraycopy(name, 0, header, 0, name.length);
+        octal(0644, 100, 8);
+        octal(0, 108, 8);
+        octal(0, 116, 8);
+        octal(Math.min(size, MAX_USTAR_SIZE), 124, 12);
+        octal(getModified() / 1000, 136, 12);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        if (prefix != null) {
+            System.arraycopy(prefix, 0, header, 345, prefix.length);
+        }
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(checksum, 148, 7);
+        header[155] = ' ';
+        out.write(header);
+        bytesWritten += BLOCK_SIZE;
+    }
+
+    /** Writes the value as octal digits terminated by NUL into the field. */
+    private void octal(long value, int offset, int length) {
+        String digits = Long.toOctalString(value);
+        int start = offset + length - 1 - digits.length();
+        Arrays.fill(header, offset, start, (byte) '0');
+        for (int i = 0; i < digits.length(); i++) {
+            header[start + i] = (byte) digits.charAt(i);
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    private void pad() throws IOException {
+        int padding = (int) ((BLOCK_SIZE - bytesWritten % BLOCK_SIZE) % BLOCK_SIZE);
+        out.write(new byte[padding]);
+        bytesWritten += padding;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            int padding = (int) ((RECORD_SIZE - (bytesWritten + 2 * BLOCK_SIZE) % RECORD_SIZE) % RECORD_SIZE);
+            out.write(new byte[2 * BLOCK_SIZE + padding]);
+            if (deflater != null) {
+                deflater.finish();
+                long crc = deflater.getCrc();
+                long size = deflater.getBytesIn();
+                target.write(new byte[] { (byte) crc, (byte) (crc >>> 8), (byte) (crc >>> 16), (byte) (crc >>> 24),
+                        (byte) size, (byte) (size >>> 8), (byte) (size >>> 16), (byte) (size >>> 24) });
+            }
+        } finally {
+            try {
+                target.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+}
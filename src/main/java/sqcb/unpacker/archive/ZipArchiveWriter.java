@@ -0,0 +1,277 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import sqcb.unpacker.io.CountingOutputStream;
+import sqcb.unpacker.io.ParallelDeflaterOutputStream;
+
+/**
+ * Writes files into a ZIP archive with DEFLATE compressed entries.
+ * <p>
+ * The archive is written as a stream: the sizes and CRC-32 of each entry follow
+ * its data in a data descriptor. The data of an entry is compressed on several
+ * threads if the writer uses more than one thread. ZIP64 extensions are used
+ * for large entries, large archives and archives with more than 65535 entries.
+ */
+public class ZipArchiveWriter extends ArchiveWriter {
+
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+
+    private static final int VERSION = 20;
+
+    private static final int VERSION_ZIP64 = 45;
+
+    /** Data descriptor and UTF-8 names */
+    private static final int FLAGS = 0x0808;
+
+    private static final int DEFLATED = 8;
+
+    private final CountingOutputStream out;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private final int dosTime;
+
+    private final byte[] buffer = new byte[65536];
+
+    /**
+     * Constructs a new ZIP archive writer.
+     *
+     * @param out           the stream to write the archive into; it is closed
+     *                      when the writer is closed
+     * @param baseDirectory the base directory of entry paths
+     * @param threads       the number of compression threads
+     */
+    public ZipArchiveWriter(OutputStream out, Path baseDirectory, int threads) {
+        super(baseDirectory, threads);
+        this.out = new CountingOutputStream(out);
+        this.dosTime = dosTime(getModified());
+    }
+
+    private static int dosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = Math.max(1980, calendar.get(Calendar.YEAR));
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    @Override
+    protected long writeEntry(String name, long size, InputStream content) throws IOException {
+        Entry entry = new Entry(name.getBytes(StandardCharsets.UTF_8), out.getBytesWritten(),
+                maxCompressedSize(size) >= ZIP64_LIMIT);
+        ByteBuffer header = buffer(30 + entry.name.length + (entry.zip64 ? 20 : 0));
+        header.putInt(0x04034b50);
+        header.putShort((short) (entry.zip64 ? VERSION_ZIP64 : VERSION));
+        header.putShort((short) FLAGS);
+        header.putShort((short) DEFLATED);
+        header.putInt(dosTime);
+        header.putInt(0);
+        header.putInt(entry.zip64 ? -1 : 0);
+        header.putInt(entry.zip64 ? -1 : 0);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) (entry.zip64 ? 20 : 0));
+        header.put(entry.name);
+        if (entry.zip64) {
+            header.putShort((short) 1);
+            header.putShort((short) 16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        write(header);
+
+        ParallelDeflaterOutputStream deflater = new ParallelDeflaterOutputStream(out, getExecutor(), getThreads());
+        try {
+            copy(content, deflater, size, buffer);
+            deflater.finish();
+        } finally {
+            deflater.close();
+        }
+        entry.crc = deflater.getCrc();
+        entry.size = deflater.getBytesIn();
+        entry.compressedSize = deflater.getBytesOut();
+        if (!entry.zip64 && (entry.compressedSize >= ZIP64_LIMIT || entry.size >= ZIP64_LIMIT)) {
+            // the data descriptor is written already without room for the sizes
+            throw new IOException("Entry exceeds 4 GB without ZIP64: " + name);
+        }
+
+        ByteBuffer descriptor = buffer(entry.zip64 ? 24 : 16);
+        descriptor.putInt(0x08074b50);
+        descriptor.putInt((int) entry.crc);
+        if (entry.zip64) {
+            descriptor.putLong(entry.compressedSize);
+            descriptor.putLong(entry.size);
+        } else {
+            descriptor.putInt((int) entry.compressedSize);
+            descriptor.putInt((int) entry.size);
+        }
+        write(descriptor);
+        entries.add(entry);
+        return size;
+    }
+
+    /**
+     * Returns the largest possible size of the specified number of bytes
+     * compressed by a {@link ParallelDeflaterOutputStream}. Incompressible data
+     * is written in stored blocks of at most 65535 bytes with a 5 byte header
+     * each, and every block of the stream ends with a sync flush.
+     *
+     * @param size the uncompressed size
+     * @return the bound of the compressed size
+     */
+    static long maxCompressedSize(long size) {
+        long blocks = size / ParallelDeflaterOutputStream.DEFAULT_BLOCK_SIZE + 1;
+        return size + (size >> 12) + (size >> 14) + (size >> 25) + 13 + 16 * blocks;
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = out.getBytesWritten();
+        for (Entry entry : entries) {
+            ByteArrayOutputStream extra = new ByteArrayOutputStream();
+            ByteBuffer fields = buffer(24);
+            if (entry.size >= ZIP64_LIMIT) {
+                fields.putLong(entry.size);
+            }
+            if (entry.compressedSize >= ZIP64_LIMIT) {
+                fields.putLong(entry.compressedSize);
+            }
+            if (entry.offset >= ZIP64_LIMIT) {
+                fields.putLong(entry.offset);
+            }
+            if (fields.position() > 0) {
+                ByteBuffer extraHeader = buffer(4);
+                extraHeader.putShort((short) 1);
+                extraHeader.putShort((short) fields.position());
+                extra.write(extraHeader.array(), 0, 4);
+                extra.write(fields.array(), 0, fields.position());
+            }
+            boolean zip64 = entry.zip64 || extra.size() > 0;
+            ByteBuffer header = buffer(46 + entry.name.length + extra.size());
+            header.putInt(0x02014b50);
+            header.putShort((short) (3 << 8 | VERSION_ZIP64));
+            header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+            header.putShort((short) FLAGS);
+            header.putShort((short) DEFLATED);
+            header.putInt(dosTime);
+            header.putInt((int) entry.crc);
+            header.putInt((int) Math.min(entry.compressedSize, ZIP64_LIMIT));
+            header.putInt((int) Math.min(entry.size, ZIP64_LIMIT));
+            header.putShort((short) entry.name.length);
+            header.putShort((short) extra.size());
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0100644 << 16);
+            header.putInt((int) Math.min(entry.offset, ZIP64_LIMIT));
+            header.put(entry.name);
+            header.put(extra.toByteArray());
+            write(header);
+        }
+        long end = out.getBytesWritten();
+        long size = end - start;
+        if (entries.size() >= 0xFFFF || start >= ZIP64_LIMIT || size >= ZIP64_LIMIT) {
+            ByteBuffer zip64 = buffer(56 + 20);
+            zip64.putInt(0x06064b50);
+            zip64.putLong(44);
+            zip64.putShort((short) (3 << 8 | VERSION_ZIP64));
+            zip64.putShort((short) VERSION_ZIP64);
+            zip64.putInt(0);
+            zip64.putInt(0);
+            zip64.putLong(entries.size());
+            zip64.putLong(entries.size());
+            zip64.putLong(size);
+            zip64.putLong(start);
+            zip64.putInt(0x07064b50);
+            zip64.putInt(0);
+            zip64.putLong(end);
+            zip64.putInt(1);
+            write(zip64);
+        }
+        ByteBuffer trailer = buffer(22);
+        trailer.putInt(0x06054b50);
+        trailer.putShort((short) 0);
+        trailer.putShort((short) 0);
+        trailer.putShort((short) Math.min(entries.size(), 0xFFFF));
+        trailer.putShort((short) Math.min(entries.size(), 0xFFFF));
+        trailer.putInt((int) Math.min(size, ZIP64_LIMIT));
+        trailer.putInt((int) Math.min(start, ZIP64_LIMIT));
+        trailer.putShort((short) 0);
+        write(trailer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeCentralDirectory();
+        } finally {
+            try {
+                out.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] name;
+
+        private final long offset;
+
+        private final boolean zip64;
+
+        private long crc;
+
+        private long size;
+
+        private long compressedSize;
+
+        private Entry(byte[] name, long offset, boolean zip64) {
+            this.name = name;
+            this.offset = offset;
+            this.zip64 = zip64;
+        }
+
+    }
+
+}
@@ -0,0 +1,193 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import sqcb.unpacker.SqcCatalog;
+import sqcb.unpacker.SqcChannelBank;
+import sqcb.unpacker.SqcRecord;
+import sqcb.unpacker.Unpacker;
+import sqcb.unpacker.io.Json;
+
+/**
+ * Prints records of SQCB files without reading the content of SQC files.
+ */
+public class RecordPrinter {
+
+    private final PrintStream out;
+
+    private final RecordFormat format;
+
+    private final Predicate<? super SqcRecord> filter;
+
+    private int banksPrinted;
+
+    /**
+     * Constructs a new printer of all records.
+     *
+     * @param out    the output print stream
+     * @param format the format
+     */
+    public RecordPrinter(PrintStream out, RecordFormat format) {
+        this(out, format, record -> true);
+    }
+
+    /**
+     * Constructs a new printer of records accepted by the specified filter.
+     *
+     * @param out    the output print stream
+     * @param format the format
+     * @param filter the filter
+     */
+    public RecordPrinter(PrintStream out, RecordFormat format, Predicate<? super SqcRecord> filter) {
+        super();
+        this.out = out;
+        this.format = format;
+        this.filter = filter;
+    }
+
+    /**
+     * Prints records of the specified SQCB files or all SQCB files contained in
+     * the specified directories.
+     *
+     * @param paths the paths
+     * @throws IOException if an I/O error occurs
+     */
+    public void printPaths(List<String> paths) throws IOException {
+        begin();
+        for (String pathStr : paths) {
+            Path path = Paths.get(pathStr);
+            if (Files.isDirectory(path)) {
+                for (Path file : Unpacker.findFiles(path)) {
+                    printFile(file);
+                }
+            } else if (Files.isRegularFile(path)) {
+                printFile(path);
+            }
+        }
+        end();
+    }
+
+    /**
+     * Prints the records of SQC files with the specified names found in the
+     * catalog, grouped by their SQCB files in the order they are found. The
+     * SQCB files are not read.
+     *
+     * @param catalog the catalog
+     * @param names   the names
+     */
+    public void printCatalog(SqcCatalog catalog, List<String> names) {
+        List<SqcCatalog.Entry> entries = new ArrayList<>();
+        for (String name : names) {
+            entries.addAll(catalog.find(name));
+        }
+        printEntries(entries);
+    }
+
+    /**
+     * Prints the records of the specified catalog entries, grouped by their
+     * SQCB files in the order they are found. The SQCB files are not read.
+     *
+     * @param entries the catalog entries
+     * @see SqcCatalog#lookup(Path, List)
+     */
+    public void printEntries(List<SqcCatalog.Entry> entries) {
+        Map<Path, List<SqcRecord>> found = new LinkedHashMap<>();
+        for (SqcCatalog.Entry entry : entries) {
+            if (filter.test(entry)) {
+                found.computeIfAbsent(entry.getBank(), bank -> new ArrayList<>()).add(entry);
+            }
+        }
+        begin();
+        for (Map.Entry<Path, List<SqcRecord>> bankEntry : found.entrySet()) {
+            printBank(bankEntry.getKey(), bankEntry.getValue());
+        }
+        end();
+    }
+
+    private void printFile(Path file) throws IOException {
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            List<SqcRecord> records = bank.getRecords().stream().filter(filter).collect(Collectors.toList());
+            printBank(file, records);
+        }
+    }
+
+    private void begin() {
+        if (format == RecordFormat.CSV) {
+            out.println("file,name,offset,size");
+        } else if (format == RecordFormat.JSON) {
+            out.println("[");
+        }
+    }
+
+    private void printBank(Path file, List<SqcRecord> records) {
+        switch (format) {
+        case CSV:
+            for (SqcRecord record : records) {
+                out.println(csv(file.toString()) + "," + csv(record.getName()) + "," + record.getOffset() + ","
+                        + record.getSize());
+            }
+            break;
+        case JSON:
+            out.println((banksPrinted > 0 ? "," : "") + "{\"file\":" + Json.quote(file.toString()) + ",\"records\":[");
+            for (int i = 0; i < records.size(); i++) {
+                SqcRecord record = records.get(i);
+                out.println("{\"name\":" + Json.quote(record.getName()) + ",\"offset\":" + record.getOffset()
+                        + ",\"size\":" + record.getSize() + "}" + (i + 1 < records.size() ? "," : ""));
+            }
+            out.println("]}");
+            break;
+        default:
+            out.println(file);
+            for (SqcRecord record : records) {
+                out.println("  " + record.getName() + "\t" + record.getOffset() + "\t" + record.getSize());
+            }
+            break;
+        }
+        banksPrinted++;
+    }
+
+    private void end() {
+        if (format == RecordFormat.JSON) {
+            out.println("]");
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+}
@@ -21,13 +21,35 @@ SOFTWARE.
 ****************************************************************************** */
 package sqcb.unpacker.cli;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import sqcb.unpacker.DeduplicatingTarget;
+import sqcb.unpacker.DirectoryTarget;
+import sqcb.unpacker.ExtractionTarget;
+import sqcb.unpacker.SqcBankWriter;
+import sqcb.unpacker.SqcCatalog;
+import sqcb.unpacker.SqcValidator;
+import sqcb.unpacker.SqcVerifier;
 import sqcb.unpacker.Unpacker;
 import sqcb.unpacker.UnpackerListener;
 import sqcb.unpacker.UnpackerLogger;
+import sqcb.unpacker.UnpackerMetrics;
+import sqcb.unpacker.UnpackerSummary;
+import sqcb.unpacker.archive.ArchiveWriter;
+import sqcb.unpacker.archive.FramedStreamWriter;
 
 /**
  * Implements the command line interface (CLI) for SQCB Unpacker.
@@ -41,11 +63,156 @@ public class UnpackerCli {
             System.exit(1);
 
         } else {
-            UnpackerListener logger = new UnpackerLogger(System.out);
-            List<UnpackerListener> listeners = Arrays.asList(logger);
-            Unpacker unpacker = new Unpacker(listeners);
-            unpacker.unpackPaths(args);
+            UnpackerOptions options;
+            try {
+                options = UnpackerOptions.parse(args);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                UnpackerHelp help = new UnpackerHelp(System.err);
+                help.print();
+                System.exit(1);
+                return;
+            }
+            if (options.getPack() != null) {
+                pack(options);
+                return;
+            }
+            if (options.getCatalog() != null) {
+                catalog(options);
+                return;
+            }
+            if (options.isList()) {
+                RecordPrinter printer = new RecordPrinter(System.out, options.getFormat(), options.getFilter());
+                printer.printPaths(options.getPaths());
+                return;
+            }
+            if (options.isVerify()) {
+                verify(options);
+                return;
+            }
+            if (options.isValidate()) {
+                validate(options);
+                return;
+            }
+            // the framed stream occupies the standard output
+            PrintStream console = options.isStdout() ? System.err : System.out;
+            UnpackerListener logger = new UnpackerLogger(console);
+            UnpackerSummary summary = new UnpackerSummary();
+            UnpackerMetrics metrics = new UnpackerMetrics();
+            List<UnpackerListener> listeners = Arrays.asList(logger, summary, metrics);
+            Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, options.getThreads(), listeners);
+            unpacker.setFilter(options.getFilter());
+            unpacker.setIncremental(options.isIncremental());
+            unpacker.setChecksums(options.isChecksums());
+            unpacker.setSha256(options.isSha256());
+            unpacker.setPipelineBuffers(options.getBuffers());
+            unpacker.setLargestFirst(options.isLargestFirst());
+            ExtractionTarget target;
+            if (options.getArchive() != null) {
+                target = ArchiveWriter.open(Paths.get(options.getArchive()), Paths.get(""),
+                        options.getCompressThreads());
+            } else if (options.isStdout()) {
+                target = new FramedStreamWriter(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)),
+                        Paths.get(""));
+            } else {
+                DirectoryTarget directoryTarget = options.isDedup()
+                        ? new DeduplicatingTarget(Unpacker.DEFAULT_BUFFER_SIZE)
+                        : new DirectoryTarget(Unpacker.DEFAULT_BUFFER_SIZE);
+                directoryTarget.setDurability(options.getDurability());
+                directoryTarget.setDirectBuffers(options.isDirectBuffers());
+                target = directoryTarget;
+            }
+            unpacker.setTarget(target);
+            try {
+                unpacker.unpackPaths(options.getPaths().toArray(new String[0]));
+            } finally {
+                try {
+                    target.close();
+                } finally {
+                    if (options.getMetrics() != null) {
+                        metrics.write(Paths.get(options.getMetrics()));
+                    }
+                }
+            }
+            summary.print(console);
+            if (target instanceof DeduplicatingTarget) {
+                DeduplicatingTarget dedup = (DeduplicatingTarget) target;
+                console.println("Linked " + dedup.getLinkedFiles() + " duplicate SQC file(s) of "
+                        + dedup.getLinkedBytes() + " bytes");
+            }
         }
     }
 
+    private static void catalog(UnpackerOptions options) throws IOException {
+        Path file = Paths.get(options.getCatalog());
+        if (options.getPaths().isEmpty()) {
+            // queries only, so probe the stored index instead of reading the catalog
+            List<SqcCatalog.Entry> entries = SqcCatalog.lookup(file, options.getQueries());
+            RecordPrinter printer = new RecordPrinter(System.out, options.getFormat(), options.getFilter());
+            printer.printEntries(entries != null ? entries : Collections.emptyList());
+            return;
+        }
+        SqcCatalog catalog = SqcCatalog.read(file);
+        if (catalog == null) {
+            catalog = new SqcCatalog();
+        }
+        int read = catalog.updatePaths(options.getPaths());
+        catalog.write(file);
+        for (Map.Entry<Path, IOException> failure : catalog.getFailures().entrySet()) {
+            System.err.println("Skipped " + failure.getKey() + ": " + failure.getValue().getMessage());
+        }
+        if (options.getQueries().isEmpty()) {
+            System.out.println("Catalogued " + catalog.getBanks().size() + " SQCB file(s) with "
+                    + catalog.getRecordCount() + " SQC file(s), read " + read + " SQCB file(s)");
+        }
+        if (!options.getQueries().isEmpty()) {
+            RecordPrinter printer = new RecordPrinter(System.out, options.getFormat(), options.getFilter());
+            printer.printCatalog(catalog, options.getQueries());
+        }
+    }
+
+    private static void verify(UnpackerOptions options) throws IOException {
+        SqcVerifier verifier = new SqcVerifier(Unpacker.DEFAULT_BUFFER_SIZE, options.getThreads());
+        SqcVerifier.Report report = verifier.verifyPaths(options.getPaths());
+        for (SqcVerifier.Mismatch mismatch : report.getMismatches()) {
+            System.out.println(mismatch);
+        }
+        System.out.println("Verified " + report.getFiles() + " SQC file(s), found " + report.getMismatches().size()
+                + " mismatch(es)");
+        if (!report.getMismatches().isEmpty()) {
+            System.exit(2);
+        }
+    }
+
+    private static void validate(UnpackerOptions options) throws IOException {
+        SqcValidator validator = new SqcValidator(options.getThreads());
+        SqcValidator.Report report = validator.validatePaths(options.getPaths());
+        for (SqcValidator.Result result : report.getResults()) {
+            System.out.println(result);
+        }
+        System.out.println("Validated " + report.getResults().size() + " SQCB file(s), found " + report.getInvalid()
+                + " invalid");
+        if (report.getInvalid() > 0) {
+            System.exit(2);
+        }
+    }
+
+    private static void pack(UnpackerOptions options) throws IOException {
+        SqcBankWriter writer = new SqcBankWriter();
+        for (String pathStr : options.getPaths()) {
+            Path path = Paths.get(pathStr);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                        writer.add(file.getFileName().toString(), file);
+                    }
+                }
+            } else if (Files.isRegularFile(path)) {
+                writer.add(path.getFileName().toString(), path);
+            }
+        }
+        writer.write(Paths.get(options.getPack()));
+        System.out.println(options.getPack());
+    }
+
 }
@@ -36,10 +36,39 @@ public class UnpackerHelp {
     }
 
     public void print() {
-        out.println("Usage: sqcb-unpacker FILE..");
-        out.println("   or: sqcb-unpacker DIRECTORY..");
+        out.println("Usage: sqcb-unpacker [OPTION].. FILE..");
+        out.println("   or: sqcb-unpacker [OPTION].. DIRECTORY..");
+        out.println("   or: sqcb-unpacker --pack BANK FILE|DIRECTORY..");
+        out.println("   or: sqcb-unpacker --catalog CATALOG [--query NAME].. [FILE|DIRECTORY]..");
         out.println(
                 "Unpacks the specified SQCB FILE or all SQCB files contained in the specified DIRECTORY and its subdirectories.");
+        out.println(
+                "Packs the specified FILEs and all files contained in the specified DIRECTORY into the SQCB file BANK.");
+        out.println();
+        out.println("Options:");
+        out.println("  -t, --threads N   unpack up to N SQCB files concurrently (0 = number of processors)");
+        out.println("  -l, --list        list name, offset and size of SQC files instead of unpacking them");
+        out.println("  -f, --format FMT  format of the list: text (default), csv or json");
+        out.println("  -i, --include PAT only SQC files whose names match the glob or regex: pattern");
+        out.println("  -x, --exclude PAT skip SQC files whose names match the glob or regex: pattern");
+        out.println("  -p, --pack BANK   pack files into the SQCB file BANK instead of unpacking");
+        out.println("  -a, --archive F   write SQC files into the archive F (*.zip, *.tar, *.tar.gz)");
+        out.println("  -s, --stdout      write SQC files to the standard output as a framed stream");
+        out.println("  -d, --dedup       write SQC files with the same content once, as hard links");
+        out.println("  -S, --sync MODE   force unpacked files to disk: none (default), bank or end");
+        out.println("  -D, --direct      write unpacked files from direct buffers");
+        out.println("  -C, --catalog F   update the catalog F with the SQCB files instead of unpacking");
+        out.println("  -q, --query NAME  print the SQCB files containing the SQC file NAME from the catalog");
+        out.println("  -z, --compress N  compress the archive on N threads (0 = number of processors)");
+        out.println("  -b, --buffers N   overlap reading and writing through a ring of N buffers");
+        out.println("  -L, --largest-first");
+        out.println("                    unpack the largest SQCB files found in directories first");
+        out.println("  -u, --incremental only unpack SQC files changed since the previous run");
+        out.println("  -c, --checksums   record CRC-32C checksums of SQC files in the manifests");
+        out.println("  -H, --sha256      record SHA-256 digests along with the checksums");
+        out.println("  -v, --verify      verify unpacked SQC files against the manifests instead of unpacking");
+        out.println("  -V, --validate    check the tables of SQCB files against their sizes instead of unpacking");
+        out.println("  -m, --metrics F   write metrics into F as JSON (*.json) or Prometheus text");
     }
 
 }
@@ -0,0 +1,415 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.cli;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import sqcb.unpacker.Durability;
+import sqcb.unpacker.RecordFilter;
+import sqcb.unpacker.Unpacker;
+import sqcb.unpacker.archive.ArchiveFormat;
+
+/**
+ * Represents options of the command line interface (CLI).
+ */
+public class UnpackerOptions {
+
+    private int threads = Unpacker.DEFAULT_THREADS;
+
+    private boolean list;
+
+    private RecordFormat format = RecordFormat.TEXT;
+
+    private final List<String> includes = new ArrayList<>();
+
+    private final List<String> excludes = new ArrayList<>();
+
+    private RecordFilter filter;
+
+    private String pack;
+
+    private String metrics;
+
+    private boolean incremental;
+
+    private boolean checksums;
+
+    private boolean sha256;
+
+    private boolean verify;
+
+    private boolean validate;
+
+    private int buffers;
+
+    private boolean largestFirst;
+
+    private String archive;
+
+    private int compressThreads = 1;
+
+    private boolean stdout;
+
+    private boolean dedup;
+
+    private Durability durability = Durability.NONE;
+
+    private boolean directBuffers;
+
+    private String catalog;
+
+    private final List<String> queries = new ArrayList<>();
+
+    private final List<String> paths = new ArrayList<>();
+
+    /**
+     * Parses the specified command line arguments.
+     *
+     * @param args the command line arguments
+     * @return the parsed options
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    public static UnpackerOptions parse(String... args) {
+        UnpackerOptions options = new UnpackerOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-t".equals(arg) || "--threads".equals(arg)) {
+                options.threads = parseThreads(value(args, ++i, arg));
+            } else if ("-l".equals(arg) || "--list".equals(arg)) {
+                options.list = true;
+            } else if ("-f".equals(arg) || "--format".equals(arg)) {
+                options.format = RecordFormat.of(value(args, ++i, arg));
+            } else if ("-p".equals(arg) || "--pack".equals(arg)) {
+                options.pack = value(args, ++i, arg);
+            } else if ("-m".equals(arg) || "--metrics".equals(arg)) {
+                options.metrics = value(args, ++i, arg);
+            } else if ("-a".equals(arg) || "--archive".equals(arg)) {
+                options.archive = value(args, ++i, arg);
+                ArchiveFormat.of(Paths.get(options.archive));
+            } else if ("-s".equals(arg) || "--stdout".equals(arg)) {
+                options.stdout = true;
+            } else if ("-d".equals(arg) || "--dedup".equals(arg)) {
+                options.dedup = true;
+            } else if ("-S".equals(arg) || "--sync".equals(arg)) {
+                options.durability = Durability.of(value(args, ++i, arg));
+            } else if ("-D".equals(arg) || "--direct".equals(arg)) {
+                options.directBuffers = true;
+            } else if ("-C".equals(arg) || "--catalog".equals(arg)) {
+                options.catalog = value(args, ++i, arg);
+            } else if ("-q".equals(arg) || "--query".equals(arg)) {
+                options.queries.add(value(args, ++i, arg));
+            } else if ("-z".equals(arg) || "--compress".equals(arg)) {
+                options.compressThreads = parseThreads(value(args, ++i, arg));
+            } else if ("-b".equals(arg) || "--buffers".equals(arg)) {
+                options.buffers = parseBuffers(value(args, ++i, arg));
+            } else if ("-L".equals(arg) || "--largest-first".equals(arg)) {
+                options.largestFirst = true;
+            } else if ("-u".equals(arg) || "--incremental".equals(arg)) {
+                options.incremental = true;
+            } else if ("-c".equals(arg) || "--checksums".equals(arg)) {
+                options.checksums = true;
+            } else if ("-H".equals(arg) || "--sha256".equals(arg)) {
+                options.checksums = true;
+                options.sha256 = true;
+            } else if ("-v".equals(arg) || "--verify".equals(arg)) {
+                options.verify = true;
+            } else if ("-V".equals(arg) || "--validate".equals(arg)) {
+                options.validate = true;
+            } else if ("-i".equals(arg) || "--include".equals(arg)) {
+                options.includes.add(value(args, ++i, arg));
+            } else if ("-x".equals(arg) || "--exclude".equals(arg)) {
+                options.excludes.add(value(args, ++i, arg));
+            } else if ("--".equals(arg)) {
+                for (i++; i < args.length; i++) {
+                    options.paths.add(args[i]);
+                }
+            } else if (arg.startsWith("-")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                options.paths.add(arg);
+            }
+        }
+        if (!options.queries.isEmpty() && options.catalog == null) {
+            throw new IllegalArgumentException("Option --query requires --catalog");
+        }
+        if (options.paths.isEmpty() && options.queries.isEmpty()) {
+            throw new IllegalArgumentException("No FILE or DIRECTORY specified");
+        }
+        if (options.stdout && options.archive != null) {
+            throw new IllegalArgumentException("Options --archive and --stdout cannot be combined");
+        }
+        if (options.dedup && (options.stdout || options.archive != null)) {
+            throw new IllegalArgumentException("Option --dedup applies to unpacking into files only");
+        }
+        if ((options.durability != Durability.NONE || options.directBuffers)
+                && (options.stdout || options.archive != null)) {
+            throw new IllegalArgumentException("Options --sync and --direct apply to unpacking into files only");
+        }
+        options.filter = new RecordFilter(options.includes, options.excludes);
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of option: " + option);
+        }
+        return args[index];
+    }
+
+    private static int parseThreads(String value) {
+        int threads;
+        try {
+            threads = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of threads: " + value);
+        }
+        if (threads < 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + value);
+        }
+        return threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    private static int parseBuffers(String value) {
+        int buffers;
+        try {
+            buffers = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of buffers: " + value);
+        }
+        if (buffers < 0) {
+            throw new IllegalArgumentException("Invalid number of buffers: " + value);
+        }
+        return buffers;
+    }
+
+    /**
+     * Returns the number of threads.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Tells whether records should be listed instead of unpacked.
+     *
+     * @return {@code true} if records should be listed
+     */
+    public boolean isList() {
+        return list;
+    }
+
+    /**
+     * Returns the format of record listings.
+     *
+     * @return the format
+     */
+    public RecordFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the SQCB file to pack the files into.
+     *
+     * @return the SQCB file or {@code null} if files should not be packed
+     */
+    public String getPack() {
+        return pack;
+    }
+
+    /**
+     * Returns the file to write metrics into.
+     *
+     * @return the metrics file or {@code null} if metrics should not be written
+     */
+    public String getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the archive to write the SQC files into.
+     *
+     * @return the archive file or {@code null} if the SQC files should be
+     *         written into files
+     */
+    public String getArchive() {
+        return archive;
+    }
+
+    /**
+     * Tells whether the SQC files should be written to the standard output as a
+     * framed stream.
+     *
+     * @return {@code true} if the SQC files should be written to the standard
+     *         output
+     */
+    public boolean isStdout() {
+        return stdout;
+    }
+
+    /**
+     * Tells whether SQC files with the same content should be hard links to a
+     * single file.
+     *
+     * @return {@code true} if duplicate SQC files should be linked
+     */
+    public boolean isDedup() {
+        return dedup;
+    }
+
+    /**
+     * Returns the durability policy of unpacked files.
+     *
+     * @return the durability policy
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Tells whether unpacked files should be written from direct buffers.
+     *
+     * @return {@code true} if direct buffers should be used
+     */
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    /**
+     * Returns the catalog file to update or query.
+     *
+     * @return the catalog file or {@code null} if SQCB files should not be
+     *         catalogued
+     */
+    public String getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns the names of SQC files to look up in the catalog.
+     *
+     * @return the names
+     */
+    public List<String> getQueries() {
+        return Collections.unmodifiableList(queries);
+    }
+
+    /**
+     * Returns the number of threads compressing the archive.
+     *
+     * @return the number of threads
+     */
+    public int getCompressThreads() {
+        return compressThreads;
+    }
+
+    /**
+     * Returns the number of buffers of the unpacking pipeline.
+     *
+     * @return the number of buffers or {@code 0} if the pipeline is disabled
+     */
+    public int getBuffers() {
+        return buffers;
+    }
+
+    /**
+     * Tells whether the largest SQCB files found in directories should be
+     * unpacked first.
+     *
+     * @return {@code true} if the largest SQCB files should be unpacked first
+     */
+    public boolean isLargestFirst() {
+        return largestFirst;
+    }
+
+    /**
+     * Tells whether only changed SQC files should be unpacked.
+     *
+     * @return {@code true} if unchanged SQC files should be skipped
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Tells whether checksums of the unpacked SQC files should be recorded.
+     *
+     * @return {@code true} if checksums should be recorded
+     */
+    public boolean isChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Tells whether SHA-256 digests of the unpacked SQC files should be
+     * recorded along with the checksums.
+     *
+     * @return {@code true} if SHA-256 digests should be recorded
+     */
+    public boolean isSha256() {
+        return sha256;
+    }
+
+    /**
+     * Tells whether the unpacked SQC files should be verified against the
+     * manifests instead of unpacking.
+     *
+     * @return {@code true} if the unpacked SQC files should be verified
+     */
+    public boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * Tells whether the structure of the SQCB files should be validated
+     * instead of unpacking them.
+     *
+     * @return {@code true} if the SQCB files should be validated
+     */
+    public boolean isValidate() {
+        return validate;
+    }
+
+    /**
+     * Returns the filter of SQC files built from the include and exclude
+     * patterns.
+     *
+     * @return the filter
+     */
+    public RecordFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the paths of files and directories to process.
+     *
+     * @return the paths
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+}
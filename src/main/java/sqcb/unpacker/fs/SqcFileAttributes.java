@@ -0,0 +1,97 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.fs;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import sqcb.unpacker.SqcRecord;
+
+/**
+ * Represents the basic attributes of a SQC file or a directory of a SQC file
+ * system. All times are the modification time of the SQCB file.
+ */
+final class SqcFileAttributes implements BasicFileAttributes {
+
+    private final SqcRecord record;
+
+    private final FileTime modified;
+
+    /**
+     * Constructs new attributes.
+     *
+     * @param record   the record of the SQC file or {@code null} if the
+     *                 attributes describe a directory
+     * @param modified the modification time of the SQCB file
+     */
+    SqcFileAttributes(SqcRecord record, FileTime modified) {
+        super();
+        this.record = record;
+        this.modified = modified;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return modified;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return modified;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return modified;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return record != null;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return record == null;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return record == null ? 0 : record.getSize();
+    }
+
+    @Override
+    public Object fileKey() {
+        return null;
+    }
+
+}
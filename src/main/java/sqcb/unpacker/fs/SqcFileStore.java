@@ -0,0 +1,110 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.fs;
+
+import java.nio.file.FileStore;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+/**
+ * Represents the read-only store of a SQC file system. The total space is the
+ * size of the SQCB file and there is no usable space.
+ */
+final class SqcFileStore extends FileStore {
+
+    private final SqcFileSystem fileSystem;
+
+    private final long totalSpace;
+
+    /**
+     * Constructs a new file store.
+     *
+     * @param fileSystem the file system
+     * @param totalSpace the size of the SQCB file
+     */
+    SqcFileStore(SqcFileSystem fileSystem, long totalSpace) {
+        super();
+        this.fileSystem = fileSystem;
+        this.totalSpace = totalSpace;
+    }
+
+    @Override
+    public String name() {
+        return fileSystem.getBankFile().toString();
+    }
+
+    @Override
+    public String type() {
+        return SqcFileSystemProvider.SCHEME;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public long getTotalSpace() {
+        return totalSpace;
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return 0;
+    }
+
+    @Override
+    public long getUnallocatedSpace() {
+        return 0;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+        return type == BasicFileAttributeView.class;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(String name) {
+        return "basic".equals(name);
+    }
+
+    @Override
+    public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        switch (attribute) {
+        case "totalSpace":
+            return getTotalSpace();
+        case "usableSpace":
+            return getUsableSpace();
+        case "unallocatedSpace":
+            return getUnallocatedSpace();
+        default:
+            throw new UnsupportedOperationException("Unsupported attribute: " + attribute);
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import sqcb.unpacker.RecordFilter;
+import sqcb.unpacker.SqcChannelBank;
+import sqcb.unpacker.SqcRecord;
+import sqcb.unpacker.io.FileChannelInputStream;
+
+/**
+ * Represents a read-only file system exposing the SQC files of a SQCB file.
+ * <p>
+ * Each SQC file is a regular file named by its record under the root
+ * directory; names containing {@code /} are placed in subdirectories. If
+ * several records have the same name, the first one is exposed. Channels and
+ * streams read the content directly from the SQCB file by positional reads, so
+ * any number of them may read concurrently. The table of records is read once
+ * when the file system is created.
+ *
+ * @see SqcFileSystemProvider
+ */
+public class SqcFileSystem extends FileSystem {
+
+    private final SqcFileSystemProvider provider;
+
+    private final Path bankFile;
+
+    private final SqcChannelBank bank;
+
+    private final FileTime modified;
+
+    private final Map<String, SqcRecord> files = new HashMap<>();
+
+    private final Map<String, Set<String>> directories = new HashMap<>();
+
+    private final SqcFileStore store;
+
+    private volatile boolean open = true;
+
+    /**
+     * Constructs a new file system of the specified SQCB file.
+     *
+     * @param provider the provider
+     * @param bankFile the SQCB file
+     * @throws IOException if an I/O error occurs
+     */
+    SqcFileSystem(SqcFileSystemProvider provider, Path bankFile) throws IOException {
+        super();
+        this.provider = provider;
+        this.bankFile = bankFile;
+        this.modified = Files.getLastModifiedTime(bankFile);
+        this.bank = new SqcChannelBank(bankFile);
+        try {
+            directories.put("/", new LinkedHashSet<>());
+            for (SqcRecord record : bank.getRecords()) {
+                add(record);
+            }
+            this.store = new SqcFileStore(this, bank.getChannel().size());
+        } catch (IOException | RuntimeException e) {
+            bank.close();
+            throw e;
+        }
+    }
+
+    private void add(SqcRecord record) {
+        String path = new SqcPath(this, "/" + record.getName()).normalize().toString();
+        if (directories.containsKey(path) || files.containsKey(path)) {
+            return;
+        }
+        for (String parent = parent(path); !directories.containsKey(parent); parent = parent(parent)) {
+            if (files.containsKey(parent)) {
+                // a SQC file cannot be a directory at the same time
+                return;
+            }
+        }
+        files.put(path, record);
+        String child = path;
+        for (String parent = parent(child);; child = parent, parent = parent(parent)) {
+            Set<String> children = directories.get(parent);
+            boolean existed = children != null;
+            if (!existed) {
+                children = new LinkedHashSet<>();
+                directories.put(parent, children);
+            }
+            children.add(child);
+            if (existed) {
+                break;
+            }
+        }
+    }
+
+    private static String parent(String path) {
+        int index = path.lastIndexOf('/');
+        return index <= 0 ? "/" : path.substring(0, index);
+    }
+
+    /**
+     * Returns the SQCB file of this file system.
+     *
+     * @return the SQCB file
+     */
+    public Path getBankFile() {
+        return bankFile;
+    }
+
+    @Override
+    public SqcFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            provider.removeFileSystem(this);
+            bank.close();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.singletonList(new SqcPath(this, "/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.singletonList(store);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        StringBuilder builder = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) {
+                if (builder.length() > 0) {
+                    builder.append('/');
+                }
+                builder.append(name);
+            }
+        }
+        return new SqcPath(this, builder.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int index = syntaxAndPattern.indexOf(':');
+        if (index <= 0) {
+            throw new IllegalArgumentException("Missing syntax: " + syntaxAndPattern);
+        }
+        String syntax = syntaxAndPattern.substring(0, index);
+        String expression = syntaxAndPattern.substring(index + 1);
+        Pattern pattern;
+        if (syntax.equalsIgnoreCase("glob")) {
+            pattern = RecordFilter.compilePathGlob(expression);
+        } else if (syntax.equalsIgnoreCase("regex")) {
+            pattern = Pattern.compile(expression);
+        } else {
+            throw new UnsupportedOperationException("Unsupported syntax: " + syntax);
+        }
+        return path -> pattern.matcher(path.toString()).matches();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("Users are not supported");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Watching is not supported");
+    }
+
+    /**
+     * Returns the store of this file system.
+     *
+     * @return the file store
+     */
+    FileStore getFileStore() {
+        return store;
+    }
+
+    /**
+     * Returns the URI of the specified absolute path, the URI of the SQCB file
+     * followed by {@code !} and the path.
+     *
+     * @param path the absolute path
+     * @return the URI
+     */
+    URI toUri(String path) {
+        URI bankUri = bankFile.toUri();
+        try {
+            return new URI(SqcFileSystemProvider.SCHEME,
+                    bankUri.getScheme() + ":" + bankUri.getSchemeSpecificPart() + "!" + path, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the attributes of the file or directory with the specified path.
+     *
+     * @param path the path
+     * @return the attributes
+     * @throws IOException if the file does not exist
+     */
+    SqcFileAttributes getAttributes(Path path) throws IOException {
+        String key = key(path);
+        SqcRecord record = files.get(key);
+        if (record == null && !directories.containsKey(key)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return new SqcFileAttributes(record, modified);
+    }
+
+    /**
+     * Opens a read-only channel to the SQC file with the specified path.
+     *
+     * @param path the path
+     * @return the channel
+     * @throws IOException if the file does not exist or is a directory
+     */
+    SeekableByteChannel newByteChannel(Path path) throws IOException {
+        SqcRecord record = getFile(path);
+        return new SqcByteChannel(bank.getChannel(), record.getOffset(), record.getSize());
+    }
+
+    /**
+     * Opens an input stream reading the SQC file with the specified path.
+     *
+     * @param path the path
+     * @return the input stream
+     * @throws IOException if the file does not exist or is a directory
+     */
+    InputStream newInputStream(Path path) throws IOException {
+        SqcRecord record = getFile(path);
+        return new FileChannelInputStream(bank.getChannel(), record.getOffset(), record.getSize());
+    }
+
+    /**
+     * Opens a stream of the entries of the directory with the specified path.
+     *
+     * @param dir    the path of the directory
+     * @param filter the filter of entries
+     * @return the directory stream
+     * @throws IOException if the directory does not exist or is a file
+     */
+    DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        String key = key(dir);
+        Set<String> children = directories.get(key);
+        if (children == null) {
+            if (files.containsKey(key)) {
+                throw new NotDirectoryException(dir.toString());
+            }
+            throw new NoSuchFileException(dir.toString());
+        }
+        List<Path> entries = new ArrayList<>(children.size());
+        for (String child : children) {
+            Path entry = dir.resolve(child.substring(child.lastIndexOf('/') + 1));
+            if (filter.accept(entry)) {
+                entries.add(entry);
+            }
+        }
+        return new DirectoryStream<Path>() {
+
+            private boolean iterated;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated) {
+                    throw new IllegalStateException("Iterator already obtained");
+                }
+                iterated = true;
+                return Collections.unmodifiableList(entries).iterator();
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+
+        };
+    }
+
+    private SqcRecord getFile(Path path) throws IOException {
+        String key = key(path);
+        SqcRecord record = files.get(key);
+        if (record == null) {
+            if (directories.containsKey(key)) {
+                throw new FileSystemException(path.toString(), null, "Is a directory");
+            }
+            throw new NoSuchFileException(path.toString());
+        }
+        return record;
+    }
+
+    private String key(Path path) {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+}
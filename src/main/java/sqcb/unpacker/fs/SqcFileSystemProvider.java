@@ -0,0 +1,379 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import sqcb.unpacker.Unpacker;
+import sqcb.unpacker.io.ExtensionPredicate;
+
+/**
+ * Provides read-only file systems exposing the SQC files of SQCB files, so that
+ * SQC files can be read in place without unpacking them.
+ * <p>
+ * The provider is installed through {@code META-INF/services}, so
+ * {@code FileSystems.newFileSystem(bankFile, (ClassLoader) null)} opens a file
+ * system of a SQCB file. Such a file system is private to its creator. A file
+ * system created from a URI, such as {@code sqcb:file:///music.sqcb}, can be
+ * looked up by {@link FileSystems#getFileSystem(URI)} and {@link Paths#get(URI)}
+ * until it is closed; the URI of a SQC file is the URI of the SQCB file
+ * followed by {@code !} and the absolute path of the SQC file.
+ * <p>
+ * Only the {@code basic} file attribute view is supported. All attempts to
+ * modify a file system throw {@link ReadOnlyFileSystemException}.
+ */
+public class SqcFileSystemProvider extends FileSystemProvider {
+
+    /** URI scheme of SQC file systems (sqcb) */
+    public static final String SCHEME = "sqcb";
+
+    private static final List<String> BASIC_ATTRIBUTES = Arrays.asList("lastModifiedTime", "lastAccessTime",
+            "creationTime", "size", "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey");
+
+    private final Map<Path, SqcFileSystem> fileSystems = new HashMap<>();
+
+    /**
+     * Constructs a new provider.
+     */
+    public SqcFileSystemProvider() {
+        super();
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        Path bankFile = toBankFile(uri);
+        synchronized (fileSystems) {
+            if (fileSystems.containsKey(bankFile)) {
+                throw new FileSystemAlreadyExistsException(bankFile.toString());
+            }
+        }
+        // the table is read without holding the lock, so lookups are not blocked meanwhile
+        SqcFileSystem fileSystem = new SqcFileSystem(this, bankFile);
+        SqcFileSystem existing;
+        synchronized (fileSystems) {
+            existing = fileSystems.putIfAbsent(bankFile, fileSystem);
+        }
+        if (existing != null) {
+            fileSystem.close();
+            throw new FileSystemAlreadyExistsException(bankFile.toString());
+        }
+        return fileSystem;
+    }
+
+    /**
+     * Constructs a new file system of the specified SQCB file. The file system
+     * is not registered for lookups by URI.
+     *
+     * @param path the SQCB file
+     * @param env  the environment, which is ignored
+     * @return the file system
+     * @throws UnsupportedOperationException if the file does not have the SQCB
+     *                                       extension or is not a file of the
+     *                                       default file system
+     * @throws IOException                   if an I/O error occurs
+     */
+    @Override
+    public FileSystem newFileSystem(Path path, Map<String, ?> env) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault()
+                || !new ExtensionPredicate(Unpacker.SQCB_EXTENSION).test(path)) {
+            throw new UnsupportedOperationException("Not a SQCB file: " + path);
+        }
+        return new SqcFileSystem(this, path.toAbsolutePath().normalize());
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        Path bankFile = toBankFile(uri);
+        synchronized (fileSystems) {
+            SqcFileSystem fileSystem = fileSystems.get(bankFile);
+            if (fileSystem == null) {
+                throw new FileSystemNotFoundException(bankFile.toString());
+            }
+            return fileSystem;
+        }
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        String spec = uri.getSchemeSpecificPart();
+        int index = spec.indexOf("!/");
+        if (index < 0) {
+            throw new IllegalArgumentException("Missing path of SQC file: " + uri);
+        }
+        return getFileSystem(uri).getPath(spec.substring(index + 1));
+    }
+
+    private static Path toBankFile(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Invalid scheme: " + uri);
+        }
+        String spec = uri.getSchemeSpecificPart();
+        int index = spec.indexOf("!/");
+        if (index >= 0) {
+            spec = spec.substring(0, index);
+        }
+        int colon = spec.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid URI of SQCB file: " + uri);
+        }
+        try {
+            URI bankUri = new URI(spec.substring(0, colon), spec.substring(colon + 1), null);
+            return Paths.get(bankUri).toAbsolutePath().normalize();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid URI of SQCB file: " + uri, e);
+        }
+    }
+
+    /**
+     * Removes the closed file system from the file systems registered for
+     * lookups by URI.
+     *
+     * @param fileSystem the file system
+     */
+    void removeFileSystem(SqcFileSystem fileSystem) {
+        synchronized (fileSystems) {
+            fileSystems.remove(fileSystem.getBankFile(), fileSystem);
+        }
+    }
+
+    private static SqcPath toSqcPath(Path path) {
+        if (!(path instanceof SqcPath)) {
+            throw new ProviderMismatchException();
+        }
+        return (SqcPath) path;
+    }
+
+    private static void checkReadOnly(Set<? extends OpenOption> options) {
+        for (OpenOption option : options) {
+            if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND
+                    || option == StandardOpenOption.CREATE || option == StandardOpenOption.CREATE_NEW
+                    || option == StandardOpenOption.DELETE_ON_CLOSE || option == StandardOpenOption.TRUNCATE_EXISTING) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options,
+            FileAttribute<?>... attrs) throws IOException {
+        checkReadOnly(options);
+        return toSqcPath(path).getFileSystem().newByteChannel(path);
+    }
+
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        checkReadOnly(new HashSet<>(Arrays.asList(options)));
+        return toSqcPath(path).getFileSystem().newInputStream(path);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        return toSqcPath(dir).getFileSystem().newDirectoryStream(dir, filter);
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path2 instanceof SqcPath) || toSqcPath(path).getFileSystem() != ((SqcPath) path2).getFileSystem()) {
+            return false;
+        }
+        return path.toRealPath().equals(path2.toRealPath());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        toSqcPath(path);
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        SqcFileSystem fileSystem = toSqcPath(path).getFileSystem();
+        fileSystem.getAttributes(path);
+        return fileSystem.getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        toSqcPath(path).getFileSystem().getAttributes(path);
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString(), null, "Read-only file system");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        SqcFileSystem fileSystem = toSqcPath(path).getFileSystem();
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        return (V) new BasicFileAttributeView() {
+
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return fileSystem.getAttributes(path);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+            throws IOException {
+        SqcFileSystem fileSystem = toSqcPath(path).getFileSystem();
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException("Unsupported attributes: " + type.getName());
+        }
+        return (A) fileSystem.getAttributes(path);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options)
+            throws IOException {
+        String names = attributes;
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            if (!"basic".equals(attributes.substring(0, colon))) {
+                throw new UnsupportedOperationException("Unsupported view: " + attributes.substring(0, colon));
+            }
+            names = attributes.substring(colon + 1);
+        }
+        BasicFileAttributes attrs = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            if (name.equals("*")) {
+                for (String basic : BASIC_ATTRIBUTES) {
+                    map.put(basic, getAttribute(attrs, basic));
+                }
+            } else if (BASIC_ATTRIBUTES.contains(name)) {
+                map.put(name, getAttribute(attrs, name));
+            } else {
+                throw new IllegalArgumentException("Unknown attribute: " + name);
+            }
+        }
+        return map;
+    }
+
+    private static Object getAttribute(BasicFileAttributes attrs, String name) {
+        switch (name) {
+        case "lastModifiedTime":
+            return attrs.lastModifiedTime();
+        case "lastAccessTime":
+            return attrs.lastAccessTime();
+        case "creationTime":
+            return attrs.creationTime();
+        case "size":
+            return attrs.size();
+        case "isRegularFile":
+            return attrs.isRegularFile();
+        case "isDirectory":
+            return attrs.isDirectory();
+        case "isSymbolicLink":
+            return attrs.isSymbolicLink();
+        case "isOther":
+            return attrs.isOther();
+        default:
+            return attrs.fileKey();
+        }
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+}
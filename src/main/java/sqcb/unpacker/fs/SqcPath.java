@@ -0,0 +1,346 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Represents a path in a SQC file system. Names are separated by {@code /} and
+ * the root is {@code /}.
+ */
+final class SqcPath implements Path {
+
+    private static final String ROOT = "/";
+
+    private final SqcFileSystem fileSystem;
+
+    private final String path;
+
+    private final String[] names;
+
+    /**
+     * Constructs a new path. Repeated and trailing separators are removed.
+     *
+     * @param fileSystem the file system
+     * @param path       the path string
+     */
+    SqcPath(SqcFileSystem fileSystem, String path) {
+        super();
+        this.fileSystem = fileSystem;
+        this.path = clean(path);
+        this.names = split(this.path);
+    }
+
+    private static String clean(String path) {
+        StringBuilder builder = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char ch = path.charAt(i);
+            if (ch == '\0') {
+                throw new InvalidPathException(path, "Null character");
+            }
+            if (ch != '/' || builder.length() == 0 || builder.charAt(builder.length() - 1) != '/') {
+                builder.append(ch);
+            }
+        }
+        if (builder.length() > 1 && builder.charAt(builder.length() - 1) == '/') {
+            builder.setLength(builder.length() - 1);
+        }
+        return builder.toString();
+    }
+
+    private static String[] split(String path) {
+        if (path.equals(ROOT)) {
+            return new String[0];
+        }
+        return (path.startsWith(ROOT) ? path.substring(1) : path).split("/", -1);
+    }
+
+    private SqcPath create(List<String> names, boolean absolute) {
+        return new SqcPath(fileSystem, (absolute ? ROOT : "") + String.join("/", names));
+    }
+
+    private SqcPath create(int beginIndex, int endIndex, boolean absolute) {
+        return create(Arrays.asList(names).subList(beginIndex, endIndex), absolute);
+    }
+
+    private SqcPath check(Path other) {
+        if (!(other instanceof SqcPath) || ((SqcPath) other).fileSystem != fileSystem) {
+            throw new ProviderMismatchException();
+        }
+        return (SqcPath) other;
+    }
+
+    @Override
+    public SqcFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith(ROOT);
+    }
+
+    @Override
+    public Path getRoot() {
+        return isAbsolute() ? new SqcPath(fileSystem, ROOT) : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        if (names.length == 0) {
+            return null;
+        }
+        return names.length == 1 && !isAbsolute() ? this : new SqcPath(fileSystem, names[names.length - 1]);
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.length == 0 || names.length == 1 && !isAbsolute()) {
+            return null;
+        }
+        return create(0, names.length - 1, isAbsolute());
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        if (index < 0 || index >= names.length) {
+            throw new IllegalArgumentException("Invalid index: " + index);
+        }
+        return new SqcPath(fileSystem, names[index]);
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || beginIndex >= endIndex || endIndex > names.length) {
+            throw new IllegalArgumentException("Invalid indexes: " + beginIndex + ", " + endIndex);
+        }
+        return create(beginIndex, endIndex, false);
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof SqcPath) || ((SqcPath) other).fileSystem != fileSystem) {
+            return false;
+        }
+        SqcPath prefix = (SqcPath) other;
+        if (prefix.isAbsolute() != isAbsolute() || prefix.names.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.names.length; i++) {
+            if (!prefix.names[i].equals(names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return startsWith(new SqcPath(fileSystem, other));
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof SqcPath) || ((SqcPath) other).fileSystem != fileSystem) {
+            return false;
+        }
+        SqcPath suffix = (SqcPath) other;
+        if (suffix.isAbsolute()) {
+            return equals(suffix);
+        }
+        int offset = names.length - suffix.names.length;
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.names.length; i++) {
+            if (!suffix.names[i].equals(names[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return endsWith(new SqcPath(fileSystem, other));
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> normalized = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..")) {
+                if (!normalized.isEmpty() && !normalized.get(normalized.size() - 1).equals("..")) {
+                    normalized.remove(normalized.size() - 1);
+                    continue;
+                }
+                if (isAbsolute()) {
+                    // the parent of the root is the root
+                    continue;
+                }
+            }
+            normalized.add(name);
+        }
+        return create(normalized, isAbsolute());
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        SqcPath child = check(other);
+        if (child.isAbsolute()) {
+            return child;
+        }
+        if (child.path.isEmpty()) {
+            return this;
+        }
+        if (path.isEmpty()) {
+            return child;
+        }
+        return new SqcPath(fileSystem, path + "/" + child.path);
+    }
+
+    @Override
+    public Path resolve(String other) {
+        return resolve(new SqcPath(fileSystem, other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        check(other);
+        Path parent = getParent();
+        return parent == null ? other : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return resolveSibling(new SqcPath(fileSystem, other));
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        SqcPath target = check(other);
+        if (target.isAbsolute() != isAbsolute()) {
+            throw new IllegalArgumentException("Cannot relativize " + other + " against " + this);
+        }
+        if (path.isEmpty()) {
+            return target;
+        }
+        int common = 0;
+        while (common < names.length && common < target.names.length
+                && names[common].equals(target.names[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            relative.add("..");
+        }
+        relative.addAll(Arrays.asList(target.names).subList(common, target.names.length));
+        return create(relative, false);
+    }
+
+    @Override
+    public URI toUri() {
+        return fileSystem.toUri(((SqcPath) toAbsolutePath().normalize()).path);
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return isAbsolute() ? this : new SqcPath(fileSystem, ROOT + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        Path realPath = toAbsolutePath().normalize();
+        fileSystem.getAttributes(realPath);
+        return realPath;
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("Not a file of the default file system: " + this);
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Watching is not supported");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        return register(watcher, events, new WatchEvent.Modifier[0]);
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> list = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            list.add(getName(i));
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(check(other).path);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof SqcPath)) {
+            return false;
+        }
+        SqcPath other = (SqcPath) obj;
+        return other.fileSystem == fileSystem && other.path.equals(path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+}
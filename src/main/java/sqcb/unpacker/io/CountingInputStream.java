@@ -30,7 +30,7 @@ import java.io.InputStream;
  */
 public class CountingInputStream extends FilterInputStream {
 
-    private int bytesRead;
+    private long bytesRead;
 
     /**
      * Constructs a new counting input stream.
@@ -38,7 +38,19 @@ public class CountingInputStream extends FilterInputStream {
      * @param stream the input stream
      */
     public CountingInputStream(InputStream stream) {
+        this(stream, 0);
+    }
+
+    /**
+     * Constructs a new counting input stream that starts counting from the
+     * specified number of bytes already read.
+     *
+     * @param stream    the input stream
+     * @param bytesRead the initial number of bytes read
+     */
+    public CountingInputStream(InputStream stream, long bytesRead) {
         super(stream);
+        this.bytesRead = bytesRead;
     }
 
     @Override
@@ -59,12 +71,19 @@ public class CountingInputStream extends FilterInputStream {
         return c;
     }
 
+    @Override
+    public long skip(long n) throws IOException {
+        long c = super.skip(n);
+        bytesRead += c;
+        return c;
+    }
+
     /**
      * Return the number of bytes read.
      *
      * @return the number of bytes read
      */
-    public int getBytesRead() {
+    public long getBytesRead() {
         return bytesRead;
     }
 
@@ -0,0 +1,138 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Computes the CRC-32C (Castagnoli) checksum of a data stream.
+ * <p>
+ * This implementation is written in pure Java and processes eight bytes per
+ * step using eight lookup tables (slicing-by-8). The multi-release JAR replaces
+ * it on Java 9 and later with an implementation delegating to
+ * {@code java.util.zip.CRC32C}, which uses the CRC32 instructions of the
+ * processor.
+ */
+public final class Crc32c implements Checksum {
+
+    /** Reversed polynomial of CRC-32C */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[][] TABLES = createTables();
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * Constructs a new CRC-32C checksum.
+     */
+    public Crc32c() {
+        super();
+    }
+
+    private static int[][] createTables() {
+        int[][] tables = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int c = i;
+            for (int bit = 0; bit < 8; bit++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+            }
+            tables[0][i] = c;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                int c = tables[t - 1][i];
+                tables[t][i] = (c >>> 8) ^ tables[0][c & 0xFF];
+            }
+        }
+        return tables;
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        int c = crc;
+        int end = off + len;
+        for (; off + 8 <= end; off += 8) {
+            int lo = (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16
+                    | (b[off + 3] & 0xFF) << 24;
+            int hi = (b[off + 4] & 0xFF) | (b[off + 5] & 0xFF) << 8 | (b[off + 6] & 0xFF) << 16
+                    | (b[off + 7] & 0xFF) << 24;
+            c = update8(c ^ lo, hi);
+        }
+        for (; off < end; off++) {
+            c = (c >>> 8) ^ TABLES[0][(c ^ b[off]) & 0xFF];
+        }
+        crc = c;
+    }
+
+    /**
+     * Updates the checksum with the remaining bytes of the specified buffer.
+     * Upon return, the position of the buffer is its limit.
+     *
+     * @param buffer the buffer
+     */
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int c = crc;
+        while (buffer.remaining() >= 8) {
+            long value = buffer.getLong();
+            c = update8(c ^ (int) value, (int) (value >>> 32));
+        }
+        while (buffer.hasRemaining()) {
+            c = (c >>> 8) ^ TABLES[0][(c ^ buffer.get()) & 0xFF];
+        }
+        crc = c;
+        buffer.order(order);
+    }
+
+    private static int update8(int lo, int hi) {
+        int[][] t = TABLES;
+        return t[7][lo & 0xFF] ^ t[6][(lo >>> 8) & 0xFF] ^ t[5][(lo >>> 16) & 0xFF] ^ t[4][lo >>> 24]
+                ^ t[3][hi & 0xFF] ^ t[2][(hi >>> 8) & 0xFF] ^ t[1][(hi >>> 16) & 0xFF] ^ t[0][hi >>> 24];
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+}
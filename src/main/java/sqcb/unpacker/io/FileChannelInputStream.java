@@ -0,0 +1,236 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Implements an input stream that reads a region of a file channel.
+ * <p>
+ * The stream uses positional reads, so it does not change the position of the
+ * channel and several streams may read the same channel concurrently. Closing
+ * the stream does not close the channel. Marking is supported at no cost, so the
+ * region may be read more than once.
+ */
+public class FileChannelInputStream extends InputStream implements ReadableByteChannel {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    private long position;
+
+    private final long end;
+
+    private long mark;
+
+    /**
+     * Constructs a new input stream reading the specified region of a channel.
+     *
+     * @param channel  the file channel
+     * @param position the position of the region
+     * @param size     the size of the region
+     */
+    public FileChannelInputStream(FileChannel channel, long position, long size) {
+        super();
+        this.channel = channel;
+        this.position = position;
+        this.end = position + size;
+        this.mark = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+        int c = channel.read(buffer, position);
+        if (c > 0) {
+            position += c;
+        }
+        return c;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        int limit = dst.limit();
+        if (dst.remaining() > remaining) {
+            dst.limit(dst.position() + (int) remaining);
+        }
+        try {
+            int c = channel.read(dst, position);
+            if (c > 0) {
+                position += c;
+            }
+            return c;
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Marks the current position. The read limit is ignored, the position may
+     * be reset after reading any number of bytes.
+     *
+     * @param readlimit the read limit
+     */
+    @Override
+    public void mark(int readlimit) {
+        mark = position;
+    }
+
+    @Override
+    public void reset() {
+        position = mark;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+    }
+
+    /**
+     * Transfers the remaining bytes of the region to the specified channel.
+     * <p>
+     * The bytes are transferred by {@link FileChannel#transferTo}, which lets the
+     * operating system copy them without passing them through user space.
+     *
+     * @param target the target channel
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long transferred = transfer(channel, position, end - position, target);
+        position += transferred;
+        return transferred;
+    }
+
+    /**
+     * Transfers bytes from a region of a file channel to the specified channel.
+     * <p>
+     * The bytes are transferred by {@link FileChannel#transferTo} as far as it
+     * makes progress. Whenever it transfers nothing, the bytes are read into a
+     * buffer and written instead, so that the transfer neither spins nor misses
+     * the end of the file. Fewer bytes than requested are transferred only if
+     * the file ends before the region does.
+     *
+     * @param channel  the file channel
+     * @param position the position of the region
+     * @param count    the size of the region
+     * @param target   the target channel
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs
+     */
+    public static long transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        long transferred = 0;
+        ByteBuffer buffer = null;
+        while (transferred < count) {
+            long c = channel.transferTo(position + transferred, count - transferred, target);
+            if (c <= 0) {
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, count - transferred));
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+                c = channel.read(buffer, position + transferred);
+                if (c < 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+            }
+            transferred += c;
+        }
+        return transferred;
+    }
+
+    /**
+     * Returns the current position in the channel.
+     *
+     * @return the position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes remaining in the region.
+     *
+     * @return the number of remaining bytes
+     */
+    public long getRemaining() {
+        return Math.max(0, end - position);
+    }
+
+    /**
+     * Returns the underlying file channel.
+     *
+     * @return the file channel
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+}
@@ -31,7 +31,7 @@ public class LimitedInputStream extends InputStream {
 
     private final InputStream stream;
 
-    private int remaining;
+    private long remaining;
 
     /**
      * Constructs a new input stream with the specified limit.
@@ -39,7 +39,7 @@ public class LimitedInputStream extends InputStream {
      * @param stream the input stream
      * @param limit  the limit
      */
-    public LimitedInputStream(InputStream stream, int limit) {
+    public LimitedInputStream(InputStream stream, long limit) {
         super();
         this.stream = stream;
         this.remaining = limit;
@@ -61,7 +61,7 @@ public class LimitedInputStream extends InputStream {
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         if (remaining > 0) {
-            int allowed = Math.min(len, remaining);
+            int allowed = (int) Math.min(len, remaining);
             int c = stream.read(b, off, allowed);
             if (c != -1) {
                 remaining -= c;
@@ -72,4 +72,42 @@ public class LimitedInputStream extends InputStream {
         }
     }
 
+    @Override
+    public long skip(long n) throws IOException {
+        if (remaining > 0 && n > 0) {
+            long c = stream.skip(Math.min(n, remaining));
+            remaining -= c;
+            return c;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Sets a new limit counted from the current position of the underlying
+     * stream, so that this stream can be reused for the next region instead of
+     * creating a new one.
+     *
+     * @param limit the limit
+     */
+    public void setLimit(long limit) {
+        this.remaining = limit;
+    }
+
+    /**
+     * Skips all remaining bytes up to the limit.
+     *
+     * @return {@code true} if the limit was reached or {@code false} if the end
+     *         of the underlying stream was reached first
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean skipRemaining() throws IOException {
+        while (remaining > 0) {
+            if (skip(remaining) == 0 && read() == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
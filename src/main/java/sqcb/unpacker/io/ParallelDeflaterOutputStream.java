@@ -0,0 +1,257 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Implements an output stream that compresses data in the raw DEFLATE format,
+ * optionally on several threads.
+ * <p>
+ * The data is split into blocks that are compressed independently, each with
+ * the end of the previous block as its dictionary, and flushed to a byte
+ * boundary, so that the compressed blocks concatenate into a single DEFLATE
+ * stream (the technique used by pigz). The compressed blocks are written to the
+ * underlying stream sequentially and in order. The number of blocks being
+ * compressed at a time is bounded.
+ * <p>
+ * {@link #finish()} must be called to complete the DEFLATE stream. Closing
+ * this stream finishes it but does not close the underlying stream.
+ */
+public class ParallelDeflaterOutputStream extends OutputStream {
+
+    /** Default block size (128 kB) */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+
+    private final ExecutorService executor;
+
+    private final int level;
+
+    private final int maxPending;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block;
+
+    private int blockLength;
+
+    private byte[] dictionary;
+
+    private long bytesIn;
+
+    private long bytesOut;
+
+    private boolean finished;
+
+    /**
+     * Constructs a new output stream.
+     *
+     * @param out       the underlying stream
+     * @param executor  the executor compressing the blocks or {@code null} to
+     *                  compress them in the calling thread
+     * @param threads   the number of threads of the executor
+     * @param level     the compression level
+     * @param blockSize the block size
+     */
+    public ParallelDeflaterOutputStream(OutputStream out, ExecutorService executor, int threads, int level,
+            int blockSize) {
+        super();
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.out = out;
+        this.executor = executor;
+        this.level = level;
+        this.maxPending = Math.max(1, 2 * threads);
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Constructs a new output stream with the default compression level and
+     * block size.
+     *
+     * @param out      the underlying stream
+     * @param executor the executor compressing the blocks or {@code null} to
+     *                 compress them in the calling thread
+     * @param threads  the number of threads of the executor
+     */
+    public ParallelDeflaterOutputStream(OutputStream out, ExecutorService executor, int threads) {
+        this(out, executor, threads, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+        crc.update(b, off, len);
+        bytesIn += len;
+        while (len > 0) {
+            int n = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == block.length) {
+                submit(false);
+            }
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        byte[] input = block;
+        int length = blockLength;
+        byte[] dict = dictionary;
+        if (!last) {
+            dictionary = Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+            block = new byte[input.length];
+            blockLength = 0;
+        }
+        if (executor == null) {
+            writeBlock(compress(input, length, dict, last, level));
+            return;
+        }
+        while (pending.size() >= maxPending) {
+            writeBlock(await(pending.removeFirst()));
+        }
+        pending.addLast(executor.submit(() -> compress(input, length, dict, last, level)));
+    }
+
+    private static byte[] compress(byte[] input, int length, byte[] dictionary, boolean last, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[Math.max(1024, Math.min(length, 64 * 1024))];
+            while (true) {
+                int n = last ? deflater.deflate(buffer) : deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, n);
+                if (last ? deflater.finished() : n < buffer.length) {
+                    return compressed.toByteArray();
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+
+    private void writeBlock(byte[] compressed) throws IOException {
+        out.write(compressed);
+        bytesOut += compressed.length;
+    }
+
+    /**
+     * Compresses the remaining data, writes all compressed blocks and completes
+     * the DEFLATE stream. The underlying stream is not closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        submit(true);
+        finished = true;
+        while (!pending.isEmpty()) {
+            writeBlock(await(pending.removeFirst()));
+        }
+    }
+
+    /**
+     * Returns the CRC-32 of the uncompressed data.
+     *
+     * @return the CRC-32
+     */
+    public long getCrc() {
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the number of uncompressed bytes written.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Returns the number of compressed bytes written to the underlying stream.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Runs unpacking tasks in parallel on virtual threads.
+ * <p>
+ * This is the Java 21 implementation of the multi-release JAR. The number of
+ * threads still bounds the number of concurrent tasks, so that the number of
+ * open files stays bounded, but blocking I/O of a task no longer occupies a
+ * platform thread.
+ */
+final class ParallelTasks {
+
+    private static final ThreadFactory VIRTUAL_THREADS = Thread.ofVirtual().name("sqcb-unpacker-", 0).factory();
+
+    private ParallelTasks() {
+        super();
+    }
+
+    /**
+     * Creates an executor running up to the specified number of tasks
+     * concurrently on virtual threads.
+     *
+     * @param threads the number of threads
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, VIRTUAL_THREADS);
+    }
+
+    /**
+     * Applies the task to the items accepted by the filter in parallel and
+     * summarizes the results. Both the filter and the task may be called
+     * concurrently. Like the parallel stream of the Java 8 implementation, all
+     * tasks run to completion even if some of them fail, so that no task is
+     * interrupted in the middle of its I/O. The first exception in the order
+     * of the items is then rethrown with the other ones suppressed.
+     *
+     * @param <T>     the type of the items
+     * @param items   the items
+     * @param threads the number of virtual threads
+     * @param filter  the filter of items
+     * @param task    the task
+     * @return the statistics of the task results
+     */
+    static <T> LongSummaryStatistics sum(Stream<T> items, int threads, Predicate<? super T> filter,
+            ToLongFunction<? super T> task) {
+        List<T> list = items.toList();
+        LongSummaryStatistics statistics = new LongSummaryStatistics();
+        if (list.isEmpty()) {
+            return statistics;
+        }
+        ExecutorService executor = newExecutor(Math.min(threads, list.size()));
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            List<Future<OptionalLong>> futures = new ArrayList<>(list.size());
+            for (T item : list) {
+                futures.add(executor.submit(
+                        () -> filter.test(item) ? OptionalLong.of(task.applyAsLong(item)) : OptionalLong.empty()));
+            }
+            for (Future<OptionalLong> future : futures) {
+                try {
+                    get(future).ifPresent(statistics::accept);
+                } catch (RuntimeException | Error e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        // the caller is interrupted, so the remaining tasks are abandoned
+                        interrupted = true;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                executor.shutdownNow();
+            } else {
+                executor.shutdown();
+            }
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (failure instanceof Error error) {
+            throw error;
+        }
+        return statistics;
+    }
+
+    private static <V> V get(Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Unpacking interrupted"));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            } else {
+                throw new UncheckedIOException(new IOException(cause));
+            }
+        }
+    }
+
+}
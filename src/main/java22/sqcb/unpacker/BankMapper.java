@@ -0,0 +1,93 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Maps regions of a SQCB file into memory.
+ * <p>
+ * This is the Java 22 implementation of the multi-release JAR. The whole file
+ * is mapped once as a memory segment, which is not limited to 2 GB, and the
+ * regions are slices of it. The file is unmapped deterministically when the
+ * mapper is closed; buffers returned by it must not be used afterwards.
+ */
+final class BankMapper implements Closeable {
+
+    private final FileChannel channel;
+
+    private Arena arena;
+
+    private MemorySegment segment;
+
+    /**
+     * Constructs a new mapper of the specified file channel.
+     *
+     * @param channel the file channel
+     */
+    BankMapper(FileChannel channel) {
+        super();
+        this.channel = channel;
+    }
+
+    /**
+     * Maps the specified region of the file.
+     *
+     * @param offset the offset of the region
+     * @param size   the size of the region
+     * @return the read-only buffer with the region content
+     * @throws IOException if an I/O error occurs
+     */
+    ByteBuffer map(long offset, long size) throws IOException {
+        return segment().asSlice(offset, size).asByteBuffer();
+    }
+
+    private synchronized MemorySegment segment() throws IOException {
+        if (arena == null) {
+            Arena shared = Arena.ofShared();
+            try {
+                segment = channel.map(MapMode.READ_ONLY, 0, channel.size(), shared);
+            } catch (IOException | RuntimeException e) {
+                shared.close();
+                throw e;
+            }
+            arena = shared;
+        }
+        return segment;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (arena != null) {
+            arena.close();
+            arena = null;
+            segment = null;
+        }
+    }
+
+}
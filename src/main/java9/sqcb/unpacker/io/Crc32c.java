@@ -0,0 +1,77 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Computes the CRC-32C (Castagnoli) checksum of a data stream.
+ * <p>
+ * This is the Java 9 implementation of the multi-release JAR. It delegates to
+ * {@link CRC32C}, which the JVM compiles into the CRC32 instructions of the
+ * processor.
+ */
+public final class Crc32c implements Checksum {
+
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * Constructs a new CRC-32C checksum.
+     */
+    public Crc32c() {
+        super();
+    }
+
+    @Override
+    public void update(int b) {
+        crc.update(b);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        crc.update(b, off, len);
+    }
+
+    /**
+     * Updates the checksum with the remaining bytes of the specified buffer.
+     * Upon return, the position of the buffer is its limit.
+     *
+     * @param buffer the buffer
+     */
+    @Override
+    public void update(ByteBuffer buffer) {
+        crc.update(buffer);
+    }
+
+    @Override
+    public long getValue() {
+        return crc.getValue();
+    }
+
+    @Override
+    public void reset() {
+        crc.reset();
+    }
+
+}
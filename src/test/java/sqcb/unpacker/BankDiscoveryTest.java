@@ -0,0 +1,102 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BankDiscoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWalk() throws IOException {
+        Path root = createTree();
+        List<Path> files = new ArrayList<>();
+        BankDiscovery.walk(root, (file, size) -> {
+            Assert.assertEquals(Files.size(file), size);
+            files.add(file);
+        });
+        Assert.assertEquals(expectedFiles(root), new HashSet<>(files));
+    }
+
+    @Test
+    public void testTakeWhileWalking() throws IOException {
+        Path root = createTree();
+        for (boolean largestFirst : new boolean[] { false, true }) {
+            Set<Path> files = new HashSet<>();
+            try (BankDiscovery discovery = new BankDiscovery(3, largestFirst)) {
+                discovery.start(root);
+                for (Path file; (file = discovery.take()) != null;) {
+                    Assert.assertTrue(files.add(file));
+                }
+                Assert.assertNull(discovery.take());
+                discovery.checkFailure();
+            }
+            Assert.assertEquals(expectedFiles(root), files);
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testTakeReportsFailure() throws IOException {
+        try (BankDiscovery discovery = new BankDiscovery(2, false)) {
+            discovery.start(folder.getRoot().toPath().resolve("missing"));
+            Assert.assertNull(discovery.take());
+            discovery.checkFailure();
+        }
+    }
+
+    private Path createTree() throws IOException {
+        Path root = folder.getRoot().toPath();
+        for (int i = 0; i < 5; i++) {
+            Path directory = Files.createDirectories(root.resolve("a" + i).resolve("b" + i));
+            TestBanks.write(directory.resolve("deep" + i + ".sqcb"), "a.sqc", "content" + i);
+            TestBanks.write(root.resolve("a" + i).resolve("shallow" + i + ".sqcb"), "a.sqc", "content");
+        }
+        Files.createDirectories(root.resolve("directory.sqcb"));
+        Files.write(root.resolve("a0").resolve("file.sqc"), new byte[1]);
+        return root;
+    }
+
+    private static Set<Path> expectedFiles(Path root) {
+        Set<Path> files = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            files.addAll(Arrays.asList(root.resolve("a" + i).resolve("b" + i).resolve("deep" + i + ".sqcb"),
+                    root.resolve("a" + i).resolve("shallow" + i + ".sqcb")));
+        }
+        return files;
+    }
+
+}
@@ -0,0 +1,139 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeduplicatingTargetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLinkDuplicatesAcrossBanks() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path first = Files.createDirectories(root.resolve("first"));
+        Path second = Files.createDirectories(root.resolve("second"));
+        TestBanks.write(first.resolve("a.sqcb"), "loop.sqc", "ambient loop", "other.sqc", "ambient LOOP");
+        TestBanks.write(second.resolve("b.sqcb"), "copy.sqc", "ambient loop", "stinger.sqc", "stinger");
+        DeduplicatingTarget target = new DeduplicatingTarget(4);
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, Collections.singletonList(summary));
+        unpacker.setTarget(target);
+        unpacker.unpackDirectory(root);
+
+        Assert.assertEquals(4, summary.getSqcCount());
+        assertContent("ambient loop", first.resolve("loop.sqc"));
+        assertContent("ambient LOOP", first.resolve("other.sqc"));
+        assertContent("ambient loop", second.resolve("copy.sqc"));
+        assertContent("stinger", second.resolve("stinger.sqc"));
+        Assert.assertTrue(Files.isSameFile(first.resolve("loop.sqc"), second.resolve("copy.sqc")));
+        Assert.assertFalse(Files.isSameFile(first.resolve("other.sqc"), second.resolve("copy.sqc")));
+        Assert.assertEquals(1, target.getLinkedFiles());
+        Assert.assertEquals(12, target.getLinkedBytes());
+        Assert.assertFalse(Files.exists(second.resolve("copy.sqc.link")));
+    }
+
+    @Test
+    public void testLinkDuplicatesWithChecksums() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("a.sqcb"), "a.sqc", "aaaaa", "b.sqc", "bbbbb", "c.sqc", "aaaaa");
+        Unpacker unpacker = new Unpacker();
+        unpacker.setTarget(new DeduplicatingTarget());
+        unpacker.setChecksums(true);
+        unpacker.setSha256(true);
+        unpacker.unpackFile(bank);
+
+        Assert.assertTrue(Files.isSameFile(root.resolve("a.sqc"), root.resolve("c.sqc")));
+        SqcVerifier.Report report = new SqcVerifier(4, 1).verifyFiles(Collections.singletonList(bank));
+        Assert.assertEquals(3, report.getFiles());
+        Assert.assertEquals(Collections.emptyList(), report.getMismatches());
+    }
+
+    @Test
+    public void testLinkDuplicatesFromStream() throws IOException {
+        Path root = folder.getRoot().toPath();
+        DeduplicatingTarget target = new DeduplicatingTarget();
+        Unpacker unpacker = new Unpacker();
+        unpacker.setTarget(target);
+        unpacker.unpackStream(new ByteArrayInputStream(TestBanks.bank("a.sqc", "same", "b.sqc", "same")), root);
+        unpacker.unpackStream(new ByteArrayInputStream(TestBanks.bank("c.sqc", "same")), root);
+
+        assertContent("same", root.resolve("b.sqc"));
+        Assert.assertTrue(Files.isSameFile(root.resolve("a.sqc"), root.resolve("b.sqc")));
+        Assert.assertTrue(Files.isSameFile(root.resolve("a.sqc"), root.resolve("c.sqc")));
+        Assert.assertEquals(2, target.getLinkedFiles());
+    }
+
+    @Test
+    public void testReplaceLinkedFile() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Unpacker unpacker = new Unpacker();
+        unpacker.setTarget(new DeduplicatingTarget());
+        unpacker.unpackFile(TestBanks.write(root.resolve("a.sqcb"), "a.sqc", "same", "b.sqc", "same"));
+        Assert.assertTrue(Files.isSameFile(root.resolve("a.sqc"), root.resolve("b.sqc")));
+
+        // a new run must not write through the link into a.sqc
+        unpacker.setTarget(new DeduplicatingTarget());
+        unpacker.unpackFile(TestBanks.write(root.resolve("b.sqcb"), "b.sqc", "diff"));
+        assertContent("same", root.resolve("a.sqc"));
+        assertContent("diff", root.resolve("b.sqc"));
+    }
+
+    @Test
+    public void testKeepFilesOutsideOfDirectory() throws IOException {
+        Path root = folder.newFolder("root").toPath();
+        Path precious = Files.write(root.resolveSibling("precious.sqc"), "keep".getBytes(StandardCharsets.UTF_8));
+        Path bank = TestBanks.write(root.resolve("a.sqcb"), "a.sqc", "same", "../precious.sqc", "same");
+        Unpacker unpacker = new Unpacker();
+        unpacker.setTarget(new DeduplicatingTarget());
+        try {
+            unpacker.unpackFile(bank);
+            Assert.fail("Escaping name accepted");
+        } catch (IOException e) {
+            Assert.assertEquals("SQC file outside of the destination directory: ../precious.sqc", e.getMessage());
+        }
+        try {
+            unpacker.unpackStream(Files.newInputStream(bank), root);
+            Assert.fail("Escaping name accepted");
+        } catch (IOException e) {
+            Assert.assertEquals("SQC file outside of the destination directory: ../precious.sqc", e.getMessage());
+        }
+        assertContent("keep", precious);
+        assertContent("same", root.resolve("a.sqc"));
+    }
+
+    private static void assertContent(String expected, Path file) throws IOException {
+        Assert.assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+}
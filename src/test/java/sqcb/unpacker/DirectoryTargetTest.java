@@ -0,0 +1,133 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryTargetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteIntoNewDirectories() throws IOException {
+        Path root = folder.getRoot().toPath();
+        try (DirectoryTarget target = new DirectoryTarget(4)) {
+            Assert.assertEquals(5, target.write(file("first"), root.resolve("a/b/first.sqc")));
+            Assert.assertEquals(6, target.write(file("second"), root.resolve("a/b/second.sqc")));
+        }
+        assertContent("first", root.resolve("a/b/first.sqc"));
+        assertContent("second", root.resolve("a/b/second.sqc"));
+    }
+
+    @Test
+    public void testPreallocateAndTruncate() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path longer = Files.write(root.resolve("longer.sqc"), "a much longer content".getBytes(StandardCharsets.UTF_8));
+        Path shorter = Files.write(root.resolve("shorter.sqc"), "abc".getBytes(StandardCharsets.UTF_8));
+        DirectoryTarget target = new DirectoryTarget(4);
+        Assert.assertTrue(target.isPreallocate());
+        target.write(file("first"), longer);
+        target.write(file("second"), shorter);
+        // the record promises more than the stream delivers
+        Path truncated = root.resolve("truncated.sqc");
+        target.write(new SqcFile("truncated.sqc", 0, 100, stream("third")), truncated);
+        assertContent("first", longer);
+        assertContent("second", shorter);
+        assertContent("third", truncated);
+    }
+
+    @Test
+    public void testDirectBuffersAndDurability() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        for (Durability durability : Durability.values()) {
+            try (DirectoryTarget target = new DirectoryTarget(4)) {
+                target.setDirectBuffers(true);
+                target.setPreallocate(false);
+                target.setDurability(durability);
+                Unpacker unpacker = new Unpacker();
+                unpacker.setTarget(target);
+                unpacker.unpackStream(Files.newInputStream(bank), root.resolve(durability.name()));
+                unpacker.unpackFile(bank);
+            }
+            assertContent("second", root.resolve(durability.name()).resolve("b.sqc"));
+            assertContent("first", root.resolve("a.sqc"));
+        }
+        Assert.assertEquals(Durability.BANK, Durability.of("bank"));
+    }
+
+    @Test
+    public void testRejectNamesOutsideOfDirectory() throws IOException {
+        Path root = folder.newFolder("root").toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "../escaped.sqc", "second");
+        for (int mode = 0; mode < 4; mode++) {
+            Unpacker unpacker = new Unpacker(4, mode == 1 ? 2 : 1, Collections.emptyList());
+            unpacker.setPipelineBuffers(mode == 2 ? 2 : 0);
+            unpacker.setIncremental(mode == 3);
+            try {
+                unpacker.unpackFile(bank);
+                Assert.fail("Escaping name accepted in mode " + mode);
+            } catch (IOException e) {
+                Assert.assertEquals("SQC file outside of the destination directory: ../escaped.sqc", e.getMessage());
+            }
+            try {
+                unpacker.unpackStream(Files.newInputStream(bank), root.resolve("stream"));
+                Assert.fail("Escaping name accepted in mode " + mode);
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("SQC file outside of the destination directory"));
+            }
+        }
+        Assert.assertFalse(Files.exists(root.resolveSibling("escaped.sqc")));
+        Assert.assertFalse(Files.exists(root.resolve("escaped.sqc")));
+        try {
+            DirectoryTarget.resolve(root, root.resolveSibling("absolute.sqc").toString());
+            Assert.fail("Absolute name accepted");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(root.resolve("a/../b.sqc"), DirectoryTarget.resolve(root, "a/../b.sqc"));
+    }
+
+    private static SqcFile file(String content) {
+        return new SqcFile("test.sqc", 0, content.length(), stream(content));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertContent(String expected, Path file) throws IOException {
+        Assert.assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,82 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecordFilterTest {
+
+    @Test
+    public void testNoPatterns() {
+        RecordFilter filter = new RecordFilter(Collections.emptyList(), Collections.emptyList());
+        Assert.assertTrue(filter.test(record("a.sqc")));
+    }
+
+    @Test
+    public void testGlob() {
+        RecordFilter filter = new RecordFilter(Arrays.asList("battle_*.sqc", "glob:{intro,outro}_?.sqc"),
+                Collections.emptyList());
+        Assert.assertTrue(filter.test(record("battle_01.sqc")));
+        Assert.assertTrue(filter.test(record("intro_1.sqc")));
+        Assert.assertTrue(filter.test(record("outro_2.sqc")));
+        Assert.assertFalse(filter.test(record("intro_12.sqc")));
+        Assert.assertFalse(filter.test(record("battle_01xsqc")));
+        Assert.assertFalse(filter.test(record("my_battle_01.sqc")));
+    }
+
+    @Test
+    public void testBracketExpression() {
+        RecordFilter filter = new RecordFilter(Collections.singletonList("track[0-4][!a-z].sqc"), Collections.emptyList());
+        Assert.assertTrue(filter.test(record("track01.sqc")));
+        Assert.assertFalse(filter.test(record("track51.sqc")));
+        Assert.assertFalse(filter.test(record("track0a.sqc")));
+    }
+
+    @Test
+    public void testRegex() {
+        RecordFilter filter = new RecordFilter(Collections.singletonList("regex:track\\d+\\.sqc"), Collections.emptyList());
+        Assert.assertTrue(filter.test(record("track12.sqc")));
+        Assert.assertFalse(filter.test(record("trackA.sqc")));
+    }
+
+    @Test
+    public void testExclude() {
+        RecordFilter filter = new RecordFilter(Collections.singletonList("*.sqc"), Collections.singletonList("*_old*"));
+        Assert.assertTrue(filter.test(record("a.sqc")));
+        Assert.assertFalse(filter.test(record("a_old.sqc")));
+        Assert.assertFalse(filter.test(record("a.wav")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPattern() {
+        new RecordFilter(Collections.singletonList("{a,b"), Collections.emptyList());
+    }
+
+    private static SqcRecord record(String name) {
+        return new SqcRecord(name, 0, 0);
+    }
+
+}
@@ -0,0 +1,181 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcBankTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNext() throws IOException {
+        byte[] bytes = TestBanks.bank("a.sqc", "first", "b.sqc", "second");
+        try (SqcBank bank = new SqcBank(new ByteArrayInputStream(bytes))) {
+            Assert.assertTrue(bank.hasNext());
+            SqcFile file = bank.next();
+            Assert.assertEquals("a.sqc", file.getName());
+            Assert.assertEquals(5, file.getSize());
+            Assert.assertEquals("first", read(file));
+            Assert.assertTrue(bank.hasNext());
+            file = bank.next();
+            Assert.assertEquals("b.sqc", file.getName());
+            Assert.assertEquals("second", read(file));
+            Assert.assertFalse(bank.hasNext());
+        }
+    }
+
+    @Test
+    public void testNextWithLargeTable() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            files.put("music_" + i + "_č.sqc", ("content " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = TestBanks.bank(files);
+        try (SqcBank bank = new SqcBank(new ByteArrayInputStream(bytes))) {
+            for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                SqcFile file = bank.next();
+                Assert.assertEquals(entry.getKey(), file.getName());
+                Assert.assertEquals(new String(entry.getValue(), StandardCharsets.UTF_8), read(file));
+            }
+            Assert.assertFalse(bank.hasNext());
+        }
+    }
+
+    @Test
+    public void testInvalidHeader() throws IOException {
+        byte[] bytes = TestBanks.bank("a.sqc", "first");
+        bytes[0] = 'X';
+        assertInvalid("Invalid header", bytes);
+    }
+
+    @Test
+    public void testInvalidVersion() throws IOException {
+        byte[] bytes = TestBanks.bank("a.sqc", "first");
+        bytes[8] = '2';
+        assertInvalid("Invalid version", bytes);
+    }
+
+    @Test
+    public void testTruncatedTable() throws IOException {
+        byte[] bytes = TestBanks.bank("a.sqc", "first");
+        assertInvalid("Unexpected end of stream", Arrays.copyOf(bytes, 30));
+    }
+
+    private static void assertInvalid(String message, byte[] bytes) throws IOException {
+        try (SqcBank bank = new SqcBank(new ByteArrayInputStream(bytes))) {
+            bank.hasNext();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static String read(SqcFile file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream stream = file.getStream();
+        byte[] block = new byte[3];
+        for (int len; (len = stream.read(block)) != -1;) {
+            out.write(block, 0, len);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNextSkipsUnreadContent() throws IOException {
+        byte[] bytes = TestBanks.bank("a.sqc", "first", "b.sqc", "second", "c.sqc", "third");
+        try (SqcBank bank = new SqcBank(new ByteArrayInputStream(bytes))) {
+            SqcFile file = bank.next();
+            Assert.assertEquals('f', file.getStream().read());
+            bank.next();
+            Assert.assertEquals("third", read(bank.next()));
+        }
+    }
+
+    @Test
+    public void testNextAllocatesOnlyFileViews() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            files.put("file" + i + ".sqc", new byte[100]);
+        }
+        byte[] bytes = TestBanks.bank(files);
+        byte[] buffer = new byte[256];
+        long allocated = 0;
+        for (int run = 0; run < 3; run++) {
+            try (SqcBank bank = new SqcBank(new ByteArrayInputStream(bytes))) {
+                bank.getRecords();
+                long start = Allocations.allocatedBytes();
+                while (bank.hasNext()) {
+                    InputStream stream = bank.next().getStream();
+                    while (stream.read(buffer) != -1) {
+                        // drain the content
+                    }
+                }
+                allocated = Allocations.allocatedBytes() - start;
+            }
+        }
+        // a SqcFile view per record, the stream is reused
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated / files.size() < 48);
+    }
+
+    @Test
+    public void testNextBeyond2And4GB() throws IOException {
+        long[] offsets = { TestBanks.tableLength("a.sqc", "b.sqc", "c.sqc"), 0x80000010L, 0xFFFFFFF8L };
+        Path file = TestBanks.writeSparse(folder.getRoot().toPath().resolve("test.sqcb"), offsets, "a.sqc", "first",
+                "b.sqc", "second", "c.sqc", "crosses 4 GB");
+        try (SqcBank bank = new SqcBank(Files.newInputStream(file))) {
+            Assert.assertEquals("first", prefix(bank.next(), 5));
+            SqcFile file2 = bank.next();
+            Assert.assertEquals(0x80000010L, file2.getOffset());
+            Assert.assertEquals("second", prefix(file2, 6));
+            SqcFile file3 = bank.next();
+            Assert.assertEquals(0xFFFFFFF8L, file3.getOffset());
+            Assert.assertEquals("crosses 4 GB", read(file3));
+            Assert.assertFalse(bank.hasNext());
+        }
+    }
+
+    private static String prefix(SqcFile file, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        InputStream stream = file.getStream();
+        for (int off = 0; off < length;) {
+            off += stream.read(bytes, off, length - off);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
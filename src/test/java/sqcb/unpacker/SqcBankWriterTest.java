@@ -0,0 +1,71 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcBankWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWrite() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path a = Files.write(root.resolve("a.sqc"), "first".getBytes(StandardCharsets.UTF_8));
+        byte[] b = "second".getBytes(StandardCharsets.UTF_8);
+        SqcBankWriter writer = new SqcBankWriter(4);
+        writer.add("a.sqc", a);
+        writer.add("b.sqc", b.length, new ByteArrayInputStream(b));
+        Path bank = root.resolve("test.sqcb");
+        writer.write(bank);
+        Assert.assertArrayEquals(TestBanks.bank("a.sqc", "first", "b.sqc", "second"), Files.readAllBytes(bank));
+        try (SqcChannelBank channelBank = new SqcChannelBank(bank)) {
+            List<SqcRecord> records = channelBank.getRecords();
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals(writer.getRecords().get(1).getOffset(), records.get(1).getOffset());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteShortStream() throws IOException {
+        SqcBankWriter writer = new SqcBankWriter();
+        writer.add("a.sqc", 10, new ByteArrayInputStream(new byte[5]));
+        writer.write(folder.getRoot().toPath().resolve("test.sqcb"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidName() {
+        new SqcBankWriter().add("a\0.sqc", 0, new ByteArrayInputStream(new byte[0]));
+    }
+
+}
@@ -0,0 +1,169 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcCatalogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFindAfterWriteAndRead() throws IOException {
+        Path root = folder.getRoot().toPath().toAbsolutePath();
+        Path first = TestBanks.write(root.resolve("first.sqcb"), "a.sqc", "alpha", "b.sqc", "beta");
+        Path second = TestBanks.write(Files.createDirectories(root.resolve("sub")).resolve("second.sqcb"), "b.sqc",
+                "bravo", "c.sqc", "gamma");
+        SqcCatalog catalog = new SqcCatalog();
+        Assert.assertEquals(2, catalog.updateDirectory(root));
+        Path file = root.resolve("music.catalog");
+        catalog.write(file);
+
+        SqcCatalog read = SqcCatalog.read(file);
+        Assert.assertEquals(Arrays.asList(first, second), read.getBanks());
+        Assert.assertEquals(4, read.getRecordCount());
+        List<SqcCatalog.Entry> entries = read.find("b.sqc");
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(first, entries.get(0).getBank());
+        Assert.assertEquals(second, entries.get(1).getBank());
+        Assert.assertEquals(TestBanks.tableLength("b.sqc", "c.sqc"), entries.get(1).getOffset());
+        Assert.assertEquals(5, entries.get(1).getSize());
+        Assert.assertEquals(Collections.emptyList(), read.find("d.sqc"));
+        Assert.assertEquals(1, read.find(new RecordFilter(Arrays.asList("c*"), Collections.emptyList())).size());
+
+        try (SqcChannelBank bank = new SqcChannelBank(entries.get(1).getBank())) {
+            SqcFile sqcFile = bank.getFile(entries.get(1));
+            byte[] content = new byte[5];
+            Assert.assertEquals(5, sqcFile.getStream().read(content));
+            Assert.assertEquals("bravo", new String(content, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLookupStoredIndex() throws IOException {
+        Path root = folder.getRoot().toPath().toAbsolutePath();
+        Path first = TestBanks.write(root.resolve("first.sqcb"), "a.sqc", "alpha", "b.sqc", "beta");
+        Path second = TestBanks.write(root.resolve("second.sqcb"), "b.sqc", "bravo", "c.sqc", "gamma");
+        SqcCatalog catalog = new SqcCatalog();
+        for (int i = 0; i < 50; i++) {
+            Path bank = root.resolve("bank" + i + ".sqcb");
+            catalog.updateFile(TestBanks.write(bank, "x" + i + ".sqc", "x", "y.sqc", "y"));
+        }
+        catalog.updateFile(first);
+        catalog.updateFile(second);
+        Path file = root.resolve("music.catalog");
+        catalog.write(file);
+
+        List<SqcCatalog.Entry> entries = SqcCatalog.lookup(file, Arrays.asList("b.sqc", "x7.sqc", "z.sqc", "c.sqc"));
+        Assert.assertEquals(4, entries.size());
+        Assert.assertEquals(first, entries.get(0).getBank());
+        Assert.assertEquals(second, entries.get(1).getBank());
+        Assert.assertEquals(TestBanks.tableLength("b.sqc", "c.sqc"), entries.get(1).getOffset());
+        Assert.assertEquals(5, entries.get(1).getSize());
+        Assert.assertEquals(root.resolve("bank7.sqcb"), entries.get(2).getBank());
+        Assert.assertEquals("c.sqc", entries.get(3).getName());
+        Assert.assertEquals(50, SqcCatalog.lookup(file, Collections.singletonList("y.sqc")).size());
+        Assert.assertEquals(catalog.find("y.sqc").size(), SqcCatalog.read(file).find("y.sqc").size());
+
+        new SqcCatalog().write(file);
+        Assert.assertEquals(Collections.emptyList(), SqcCatalog.lookup(file, Collections.singletonList("b.sqc")));
+        Assert.assertNull(SqcCatalog.lookup(root.resolve("missing.catalog"), Collections.singletonList("b.sqc")));
+    }
+
+    @Test
+    public void testUpdateReadsChangedBanksOnly() throws IOException {
+        Path root = folder.getRoot().toPath().toAbsolutePath();
+        Path first = TestBanks.write(root.resolve("first.sqcb"), "a.sqc", "alpha");
+        Path second = TestBanks.write(root.resolve("second.sqcb"), "b.sqc", "beta");
+        Path third = TestBanks.write(root.resolve("third.sqcb"), "c.sqc", "gamma");
+        SqcCatalog catalog = new SqcCatalog();
+        Assert.assertEquals(3, catalog.updateDirectory(root));
+        Assert.assertEquals(0, catalog.updateDirectory(root));
+        Path file = root.resolve("music.catalog");
+        catalog.write(file);
+
+        // same size, so only the modification time tells the change
+        TestBanks.write(second, "d.sqc", "beta");
+        Files.setLastModifiedTime(second, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() + 2000));
+        Files.delete(third);
+        // stale records are left out until the catalog is updated
+        Assert.assertEquals(Collections.emptyList(), catalog.find("b.sqc"));
+        Assert.assertEquals(Collections.emptyList(), catalog.find(record -> !record.getName().equals("a.sqc")));
+        Assert.assertEquals(1, catalog.find("a.sqc").size());
+        Assert.assertEquals(Collections.emptyList(), SqcCatalog.lookup(file, Arrays.asList("b.sqc", "c.sqc")));
+        Assert.assertEquals(first, SqcCatalog.lookup(file, Arrays.asList("b.sqc", "a.sqc")).get(0).getBank());
+        Assert.assertEquals(1, catalog.updateDirectory(root));
+        Assert.assertEquals(Arrays.asList(first, second), catalog.getBanks());
+        Assert.assertEquals(Collections.emptyList(), catalog.find("b.sqc"));
+        Assert.assertEquals(Collections.emptyList(), catalog.find("c.sqc"));
+        Assert.assertEquals(second, catalog.find("d.sqc").get(0).getBank());
+    }
+
+    @Test
+    public void testUpdateSkipsBrokenBanks() throws IOException {
+        Path root = folder.getRoot().toPath().toAbsolutePath();
+        Path first = TestBanks.write(root.resolve("first.sqcb"), "a.sqc", "alpha");
+        Path broken = TestBanks.write(root.resolve("broken.sqcb"), "b.sqc", "beta");
+        Path third = TestBanks.write(root.resolve("third.sqcb"), "c.sqc", "gamma");
+        SqcCatalog catalog = new SqcCatalog();
+        Assert.assertEquals(3, catalog.updateDirectory(root));
+
+        Files.write(broken, new byte[] { 'n', 'o', 't', ' ', 'a', ' ', 'b', 'a', 'n', 'k' });
+        Files.setLastModifiedTime(third, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() + 2000));
+        Assert.assertEquals(1, catalog.updatePaths(Arrays.asList(root.toString())));
+        Assert.assertEquals(Arrays.asList(first, third), catalog.getBanks());
+        Assert.assertEquals(Collections.singleton(broken), catalog.getFailures().keySet());
+        Assert.assertEquals(1, catalog.find("c.sqc").size());
+
+        try {
+            catalog.updateFile(broken);
+            Assert.fail("Broken bank read");
+        } catch (IOException e) {
+            Assert.assertSame(e, catalog.getFailures().get(broken));
+        }
+        Files.delete(broken);
+        Assert.assertEquals(0, catalog.updateDirectory(root));
+        Assert.assertEquals(Collections.emptyMap(), catalog.getFailures());
+    }
+
+    @Test
+    public void testReadInvalid() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("music.catalog");
+        Assert.assertNull(SqcCatalog.read(file));
+        Files.write(file, new byte[] { 'S', 'Q', 'C', 'C', 0, 0, 0, 2, 0, 0 });
+        Assert.assertNull(SqcCatalog.read(file));
+    }
+
+}
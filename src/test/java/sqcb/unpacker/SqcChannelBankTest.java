@@ -0,0 +1,168 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcChannelBankTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGetRecords() throws IOException {
+        Path file = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            List<SqcRecord> records = bank.getRecords();
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals("a.sqc", records.get(0).getName());
+            Assert.assertEquals(5, records.get(0).getSize());
+            Assert.assertEquals("b.sqc", records.get(1).getName());
+            Assert.assertEquals(records.get(0).getOffset() + 5, records.get(1).getOffset());
+            Assert.assertSame(records.get(1), bank.getRecord("b.sqc"));
+            Assert.assertNull(bank.getRecord("c.sqc"));
+        }
+    }
+
+    @Test
+    public void testGetFileInAnyOrder() throws IOException {
+        Path file = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            Assert.assertEquals("second", read(bank.getFile(1)));
+            Assert.assertEquals("first", read(bank.getFile(0)));
+            Assert.assertEquals("second", read(bank.getFile(bank.getRecord("b.sqc"))));
+        }
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        Path file = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            ByteBuffer buffer = bank.map(bank.getRecord("b.sqc"));
+            Assert.assertEquals("second", StandardCharsets.UTF_8.decode(buffer).toString());
+        }
+    }
+
+    @Test
+    public void testNext() throws IOException {
+        Path file = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            Assert.assertTrue(bank.hasNext());
+            Assert.assertEquals("first", read(bank.next()));
+            Assert.assertTrue(bank.hasNext());
+            Assert.assertEquals("second", read(bank.next()));
+            Assert.assertFalse(bank.hasNext());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRecordOutsideBank() throws IOException {
+        Path file = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            bank.getFile(new SqcRecord("b.sqc", bank.getRecords().get(0).getOffset(), 6));
+        }
+    }
+
+    private static String read(SqcFile file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = file.getStream()) {
+            byte[] block = new byte[3];
+            for (int len; (len = stream.read(block)) != -1;) {
+                out.write(block, 0, len);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFilesInParallel() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            files.put("file" + i + ".sqc", ("content" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        Path file = Files.write(folder.getRoot().toPath().resolve("test.sqcb"), TestBanks.bank(files));
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            Map<String, String> contents = bank.files().parallel().collect(Collectors.toConcurrentMap(SqcFile::getName, f -> {
+                try {
+                    return read(f);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            Assert.assertEquals(500, contents.size());
+            for (int i = 0; i < 500; i++) {
+                Assert.assertEquals("content" + i, contents.get("file" + i + ".sqc"));
+            }
+            List<String> names = bank.files().map(SqcFile::getName).collect(Collectors.toList());
+            Assert.assertEquals(new ArrayList<>(files.keySet()), names);
+        }
+    }
+
+    @Test
+    public void testRecordsBeyond2And4GB() throws IOException {
+        long[] offsets = { TestBanks.tableLength("a.sqc", "b.sqc", "c.sqc"), 0x80000010L, 0xFFFFFFF8L };
+        Path file = TestBanks.writeSparse(folder.getRoot().toPath().resolve("test.sqcb"), offsets, "a.sqc", "first",
+                "b.sqc", "second", "c.sqc", "crosses 4 GB");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            List<SqcRecord> records = bank.getRecords();
+            Assert.assertEquals(0x80000010L, records.get(1).getOffset());
+            Assert.assertEquals(0xFFFFFFF8L, records.get(2).getOffset());
+            Assert.assertEquals(12, records.get(2).getSize());
+            Assert.assertEquals(0x80000010L - offsets[0], records.get(0).getSize());
+            Assert.assertEquals(0xFFFFFFE8L - 0x80000000L, records.get(1).getSize());
+            Assert.assertEquals("first", prefix(bank.getFile(0), 5));
+            Assert.assertEquals("second", prefix(bank.getFile(1), 6));
+            Assert.assertEquals("crosses 4 GB", read(bank.getFile(2)));
+            ByteBuffer buffer = bank.map(records.get(2));
+            Assert.assertEquals(12, buffer.remaining());
+            Assert.assertEquals('c', buffer.get(0));
+            Assert.assertEquals('B', buffer.get(11));
+        }
+    }
+
+    private static String prefix(SqcFile file, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        InputStream stream = file.getStream();
+        for (int off = 0; off < length;) {
+            off += stream.read(bytes, off, length - off);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
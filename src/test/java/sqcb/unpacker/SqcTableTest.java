@@ -0,0 +1,106 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexOf() {
+        List<SqcRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            records.add(new SqcRecord("music_" + i + ".sqc", 100L * i, i));
+        }
+        SqcTable table = SqcTable.of(records);
+        Assert.assertEquals(10000, table.size());
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i, table.indexOf("music_" + i + ".sqc"));
+        }
+        Assert.assertEquals(-1, table.indexOf("music_10000.sqc"));
+        Assert.assertEquals(-1, table.indexOf(""));
+        Assert.assertEquals("music_42.sqc", table.getName(42));
+        Assert.assertEquals(4200, table.getOffset(42));
+        Assert.assertEquals(42, table.find("music_42.sqc").getSize());
+        Assert.assertNull(table.find("music_42"));
+    }
+
+    @Test
+    public void testNamesAndValues() {
+        SqcTable table = SqcTable.of(Arrays.asList(new SqcRecord("a.sqc", 0xFFFFFFF0L, 0x80000000L),
+                new SqcRecord("část.sqc", 1, 2), new SqcRecord("a.sqc", 3, 4), new SqcRecord("", 5, 6)));
+        Assert.assertEquals(0xFFFFFFF0L, table.getOffset(0));
+        Assert.assertEquals(0x80000000L, table.getSize(0));
+        Assert.assertEquals("část.sqc", table.getName(1));
+        Assert.assertEquals(1, table.indexOf("část.sqc"));
+        // the first record of a name is found
+        Assert.assertEquals(0, table.indexOf("a.sqc"));
+        Assert.assertEquals(3, table.indexOf(""));
+        Assert.assertEquals(4, table.asList().size());
+        Assert.assertEquals(3, table.asList().get(2).getOffset());
+        try {
+            table.getName(4);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        SqcTable table = SqcTable.of(new ArrayList<>());
+        Assert.assertEquals(0, table.size());
+        Assert.assertEquals(-1, table.indexOf("a.sqc"));
+        Assert.assertTrue(table.asList().isEmpty());
+    }
+
+    @Test
+    public void testReadTable() throws IOException {
+        Path file = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc",
+                "second");
+        try (SqcChannelBank bank = new SqcChannelBank(file)) {
+            SqcTable table = bank.getTable();
+            Assert.assertEquals(2, table.size());
+            Assert.assertEquals(1, table.indexOf("b.sqc"));
+            Assert.assertEquals(TestBanks.tableLength("a.sqc", "b.sqc") + 5, table.getOffset(1));
+            Assert.assertEquals(6, bank.getRecord("b.sqc").getSize());
+        }
+        try (SqcBank bank = new SqcBank(new ByteArrayInputStream(TestBanks.bank("a.sqc", "first")))) {
+            Assert.assertEquals(0, bank.getTable().indexOf("a.sqc"));
+            Assert.assertEquals("a.sqc", bank.next().getName());
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcValidatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testValidateFiles() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path valid = TestBanks.write(root.resolve("valid.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        Path empty = TestBanks.write(root.resolve("empty.sqcb"));
+        Path truncated = TestBanks.write(root.resolve("truncated.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        Path trailing = TestBanks.write(root.resolve("trailing.sqcb"), "a.sqc", "first");
+        Files.write(trailing, new byte[3], StandardOpenOption.APPEND);
+        Path header = Files.write(root.resolve("header.sqcb"), "SQCX".getBytes(StandardCharsets.UTF_16LE));
+
+        SqcValidator validator = new SqcValidator(2);
+        SqcValidator.Report report = validator.validateFiles(Arrays.asList(valid, empty, truncated, trailing, header,
+                root.resolve("missing.sqcb")));
+        List<SqcValidator.Result> results = report.getResults();
+        Assert.assertEquals(6, results.size());
+        Assert.assertEquals(4, report.getInvalid());
+        Assert.assertTrue(results.get(0).isValid());
+        Assert.assertEquals(2, results.get(0).getRecords());
+        Assert.assertTrue(results.get(1).isValid());
+        Assert.assertEquals(0, results.get(1).getRecords());
+        long end = TestBanks.tableLength("a.sqc", "b.sqc") + 11;
+        Assert.assertEquals(Collections.singletonList("Record b.sqc ends at " + end + " beyond the end of file at "
+                + (end - 1)), results.get(2).getProblems());
+        Assert.assertEquals(Collections.singletonList("3 bytes after the last record"), results.get(3).getProblems());
+        Assert.assertEquals(Collections.singletonList("Invalid header"), results.get(4).getProblems());
+        Assert.assertEquals(Collections.singletonList("Missing file"), results.get(5).getProblems());
+    }
+
+    @Test
+    public void testValidateMissingPath() throws IOException {
+        Path root = folder.getRoot().toPath();
+        TestBanks.write(root.resolve("valid.sqcb"), "a.sqc", "first");
+        SqcValidator.Report report = new SqcValidator(2).validatePaths(Arrays.asList(root.toString(),
+                root.resolve("missing").toString()));
+        Assert.assertEquals(2, report.getResults().size());
+        Assert.assertEquals(1, report.getInvalid());
+        Assert.assertEquals(Collections.singletonList("Missing file"), report.getResults().get(1).getProblems());
+    }
+
+    @Test
+    public void testValidateOffsets() throws IOException {
+        Path root = folder.getRoot().toPath();
+        long start = TestBanks.tableLength("a.sqc", "b.sqc", "c.sqc");
+        // each record spans up to the next offset, so shifting an offset leaves a gap or an overlap
+        Path gap = TestBanks.writeSparse(root.resolve("gap.sqcb"), new long[] { start + 2, start + 10, start + 20 },
+                "a.sqc", "first", "b.sqc", "second", "c.sqc", "third");
+        Path order = TestBanks.writeSparse(root.resolve("order.sqcb"), new long[] { start, start + 10, start + 5 },
+                "a.sqc", "first", "b.sqc", "second", "c.sqc", "third");
+        Path table = TestBanks.writeSparse(root.resolve("table.sqcb"), new long[] { start - 4, start + 10, start + 20 },
+                "a.sqc", "first", "b.sqc", "second", "c.sqc", "third");
+
+        SqcValidator validator = new SqcValidator(1);
+        Assert.assertEquals(Collections.singletonList("Gap of 2 bytes before record a.sqc"),
+                validator.validate(gap).getProblems());
+        List<String> problems = validator.validate(order).getProblems();
+        Assert.assertTrue(problems.contains("Record c.sqc at " + (start + 5) + " is out of order"));
+        problems = validator.validate(table).getProblems();
+        Assert.assertEquals("Record a.sqc at " + (start - 4) + " overlaps the table ending at " + start,
+                problems.get(0));
+    }
+
+}
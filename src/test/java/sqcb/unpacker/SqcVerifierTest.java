@@ -0,0 +1,91 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqcVerifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testVerifyFiles() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second", "c.sqc", "third",
+                "d.sqc", "fourth");
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 2, Collections.emptyList());
+        unpacker.setChecksums(true);
+        unpacker.setSha256(true);
+        unpacker.unpackFile(bank);
+
+        SqcVerifier verifier = new SqcVerifier(4, 3);
+        SqcVerifier.Report report = verifier.verifyFiles(Collections.singletonList(bank));
+        Assert.assertEquals(4, report.getFiles());
+        Assert.assertEquals(Collections.emptyList(), report.getMismatches());
+
+        Files.write(root.resolve("a.sqc"), "FIRST".getBytes(StandardCharsets.UTF_8));
+        Files.delete(root.resolve("b.sqc"));
+        Files.write(root.resolve("c.sqc"), "thirds".getBytes(StandardCharsets.UTF_8));
+        Path other = TestBanks.write(root.resolve("other.sqcb"), "e.sqc", "fifth");
+        report = verifier.verifyFiles(Arrays.asList(bank, other));
+        Assert.assertEquals(4, report.getFiles());
+        List<SqcVerifier.Mismatch> mismatches = report.getMismatches();
+        Assert.assertEquals(4, mismatches.size());
+        Assert.assertEquals(root.resolve("a.sqc"), mismatches.get(0).getFile());
+        Assert.assertTrue(mismatches.get(0).getReason(), mismatches.get(0).getReason().startsWith("CRC-32C "));
+        Assert.assertEquals(root.resolve("b.sqc") + ": Missing file", mismatches.get(1).toString());
+        Assert.assertEquals("Size 6, expected 5", mismatches.get(2).getReason());
+        Assert.assertEquals(other + ": Missing manifest", mismatches.get(3).toString());
+    }
+
+    @Test
+    public void testVerifySha256() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first");
+        SqcManifest manifest = SqcManifest.of(bank);
+        // a CRC-32C collision is unlikely, so pretend one by recording the checksum of the content
+        ContentChecksum checksum = new ContentChecksum(false);
+        checksum.update(ByteBuffer.wrap("first".getBytes(StandardCharsets.UTF_8)));
+        manifest.put(new SqcManifest.Entry("a.sqc", 0, 5, checksum.getCrc32c(), "00"));
+        manifest.write(SqcManifest.getFile(bank));
+        Files.write(root.resolve("a.sqc"), "first".getBytes(StandardCharsets.UTF_8));
+
+        SqcVerifier.Report report = new SqcVerifier(Unpacker.DEFAULT_BUFFER_SIZE, 1).verifyPaths(
+                Collections.singletonList(root.toString()));
+        Assert.assertEquals(1, report.getMismatches().size());
+        Assert.assertTrue(report.getMismatches().get(0).getReason().startsWith("SHA-256 a7937b64"));
+    }
+
+}
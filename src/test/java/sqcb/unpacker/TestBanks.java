@@ -0,0 +1,161 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates synthetic SQC banks for tests.
+ */
+public final class TestBanks {
+
+    private TestBanks() {
+        super();
+    }
+
+    /**
+     * Creates a SQC bank containing files with the given names and contents.
+     *
+     * @param namesAndContents the alternating names and contents
+     * @return the SQC bank bytes
+     */
+    public static byte[] bank(String... namesAndContents) {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            files.put(namesAndContents[i], namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        return bank(files);
+    }
+
+    /**
+     * Creates a SQC bank containing the given files.
+     *
+     * @param files the file contents by names
+     * @return the SQC bank bytes
+     */
+    public static byte[] bank(Map<String, byte[]> files) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeChars(out, SqcBank.HEADER);
+        writeChars(out, SqcBank.VERSION);
+        writeInt(out, files.size());
+        int offset = 8 + 8 + 4;
+        for (String name : files.keySet()) {
+            offset += 2 * (name.length() + 1) + 4 + 4;
+        }
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            writeChars(out, file.getKey());
+            writeChars(out, "\0");
+            writeInt(out, offset);
+            writeInt(out, file.getValue().length);
+            offset += file.getValue().length;
+        }
+        for (byte[] content : files.values()) {
+            out.write(content, 0, content.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a SQC bank containing files with the given names and contents.
+     *
+     * @param file             the SQCB file
+     * @param namesAndContents the alternating names and contents
+     * @return the SQCB file
+     * @throws IOException if an I/O error occurs
+     */
+    public static Path write(Path file, String... namesAndContents) throws IOException {
+        return Files.write(file, bank(namesAndContents));
+    }
+
+    /**
+     * Writes a sparse SQC bank containing files with the given names and
+     * contents placed at the given offsets. Each file but the last spans up to
+     * the offset of the next one, its content is followed by a hole of zeros.
+     * This allows banks larger than 4 GB without the disk space they would
+     * take.
+     *
+     * @param file             the SQCB file
+     * @param offsets          the ascending offsets of the files
+     * @param namesAndContents the alternating names and contents
+     * @return the SQCB file
+     * @throws IOException if an I/O error occurs
+     */
+    public static Path writeSparse(Path file, long[] offsets, String... namesAndContents) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeChars(out, SqcBank.HEADER);
+        writeChars(out, SqcBank.VERSION);
+        writeInt(out, offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            writeChars(out, namesAndContents[2 * i]);
+            writeChars(out, "\0");
+            writeInt(out, (int) offsets[i]);
+            long end = i + 1 < offsets.length ? offsets[i + 1] : offsets[i] + namesAndContents[2 * i + 1].length();
+            writeInt(out, (int) (end - offsets[i]));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SPARSE)) {
+            channel.write(ByteBuffer.wrap(out.toByteArray()), 0);
+            for (int i = 0; i < offsets.length; i++) {
+                byte[] content = namesAndContents[2 * i + 1].getBytes(StandardCharsets.UTF_8);
+                channel.write(ByteBuffer.wrap(content), offsets[i]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the length of the table of a SQC bank containing files with the
+     * given names.
+     *
+     * @param names the names
+     * @return the table length
+     */
+    public static long tableLength(String... names) {
+        long length = 8 + 8 + 4;
+        for (String name : names) {
+            length += 2 * (name.length() + 1) + 4 + 4;
+        }
+        return length;
+    }
+
+    private static void writeChars(ByteArrayOutputStream out, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_16LE);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+}
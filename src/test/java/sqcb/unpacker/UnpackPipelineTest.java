@@ -0,0 +1,60 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UnpackPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 10000)
+    public void testFailingCompletionDoesNotStopWriter() throws IOException {
+        Path root = folder.getRoot().toPath();
+        UnpackPipeline.Completion completion = event -> {
+            throw new IllegalStateException("listener failed");
+        };
+        try (UnpackPipeline pipeline = new UnpackPipeline(2, 16, 1, new DirectoryTarget(16), false, completion)) {
+            // the completion runs on the reader or the writer thread, whichever releases the file last; a writer
+            // stopped by the failure would leave the reader waiting for buffers of the following files
+            for (int i = 0; i < 100; i++) {
+                try {
+                    pipeline.unpack(new SqcFile("a.sqc", 0, 64, new ByteArrayInputStream(new byte[64])),
+                            root.resolve("a" + i + ".sqc"));
+                    pipeline.finish();
+                    Assert.fail();
+                } catch (IllegalStateException e) {
+                    Assert.assertEquals("listener failed", e.getMessage());
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UnpackerMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCollect() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        UnpackerMetrics metrics = new UnpackerMetrics();
+        new Unpacker(Collections.singletonList(metrics)).unpackFile(bank);
+        Assert.assertEquals(1, metrics.getSqcbCount());
+        Assert.assertEquals(2, metrics.getSqcCount());
+        Assert.assertEquals(11, metrics.getBytes());
+        Assert.assertEquals(0, metrics.getFailures());
+        Assert.assertTrue(metrics.getElapsedNanos() > 0);
+
+        StringWriter prometheus = new StringWriter();
+        metrics.writePrometheus(prometheus);
+        Assert.assertTrue(prometheus.toString().contains("sqcb_unpacker_sqc_files_total 2\n"));
+        Assert.assertTrue(prometheus.toString().contains("sqcb_unpacker_sqc_duration_seconds_bucket{le=\"+Inf\"} 2\n"));
+        Assert.assertTrue(prometheus.toString().contains("sqcb_unpacker_bank_bytes{bank=\"" + bank + "\"} 11\n"));
+
+        Path json = root.resolve("metrics.json");
+        metrics.write(json);
+        String content = new String(Files.readAllBytes(json), StandardCharsets.UTF_8);
+        Assert.assertTrue(content.contains("\"sqcFiles\": 2,"));
+        Assert.assertTrue(content.contains("\"files\": 2, \"bytes\": 11"));
+    }
+
+    @Test
+    public void testFailure() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = Files.write(root.resolve("test.sqcb"), "this is not a bank".getBytes(StandardCharsets.UTF_8));
+        UnpackerMetrics metrics = new UnpackerMetrics();
+        try {
+            new Unpacker(Collections.singletonList(metrics)).unpackFile(bank);
+            Assert.fail();
+        } catch (IOException e) {
+            /* Expected */
+        }
+        StringWriter json = new StringWriter();
+        metrics.writeJson(json);
+        Assert.assertTrue(json.toString().contains("\"error\": \"java.io.IOException: Invalid header\""));
+    }
+
+}
@@ -0,0 +1,394 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sqcb.unpacker.archive.ArchiveWriter;
+import sqcb.unpacker.io.Crc32c;
+
+public class UnpackerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnpackFile() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        new Unpacker().unpackFile(bank);
+        assertContent("first", bank.resolveSibling("a.sqc"));
+        assertContent("second", bank.resolveSibling("b.sqc"));
+    }
+
+    @Test
+    public void testUnpackStream() throws IOException {
+        byte[] bank = TestBanks.bank("a.sqc", "first", "b.sqc", "second");
+        Path root = folder.getRoot().toPath();
+        new Unpacker().unpackStream(new ByteArrayInputStream(bank), root);
+        assertContent("first", root.resolve("a.sqc"));
+        assertContent("second", root.resolve("b.sqc"));
+    }
+
+    @Test
+    public void testUnpackDirectoryConcurrently() throws IOException {
+        Path root = folder.getRoot().toPath();
+        for (int i = 0; i < 8; i++) {
+            Path directory = Files.createDirectories(root.resolve("dir" + i));
+            TestBanks.write(directory.resolve("bank.sqcb"), "a" + i + ".sqc", "first" + i, "b" + i + ".sqc", "second" + i);
+        }
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 4, Collections.singletonList(summary));
+        unpacker.unpackDirectory(root);
+        Assert.assertEquals(8, summary.getSqcbCount());
+        Assert.assertEquals(16, summary.getSqcCount());
+        for (int i = 0; i < 8; i++) {
+            assertContent("first" + i, root.resolve("dir" + i).resolve("a" + i + ".sqc"));
+            assertContent("second" + i, root.resolve("dir" + i).resolve("b" + i + ".sqc"));
+        }
+    }
+
+    @Test
+    public void testUnpackDirectoryConcurrentlyReportsFirstFailure() throws IOException {
+        Path root = folder.getRoot().toPath();
+        TestBanks.write(root.resolve("a.sqcb"), "a.sqc", "a");
+        Files.write(root.resolve("b.sqcb"), "this is not a bank".getBytes(StandardCharsets.UTF_8));
+        TestBanks.write(root.resolve("c.sqcb"), "c.sqc", "c");
+        Files.write(root.resolve("d.sqcb"), "SQCB0.00".getBytes(StandardCharsets.UTF_16LE));
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 3, Collections.emptyList());
+        try {
+            unpacker.unpackDirectory(root);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("Invalid header", e.getMessage());
+            Assert.assertEquals(1, e.getSuppressed().length);
+            Assert.assertEquals("Invalid version", e.getSuppressed()[0].getMessage());
+        }
+        assertContent("a", root.resolve("a.sqc"));
+        assertContent("c", root.resolve("c.sqc"));
+    }
+
+    @Test
+    public void testUnpackNestedDirectoriesLargestFirst() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path directory = root;
+        for (int i = 0; i < 6; i++) {
+            directory = Files.createDirectories(directory.resolve("level" + i));
+            TestBanks.write(directory.resolve("bank.sqcb"), "a.sqc", new String(new char[i + 1]).replace("\0", "x"));
+        }
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 3, Collections.singletonList(summary));
+        unpacker.setLargestFirst(true);
+        unpacker.unpackDirectory(root);
+        Assert.assertEquals(6, summary.getSqcbCount());
+        directory = root;
+        for (int i = 0; i < 6; i++) {
+            directory = directory.resolve("level" + i);
+            Assert.assertEquals(i + 1, Files.size(directory.resolve("a.sqc")));
+        }
+    }
+
+    private static void assertContent(String expected, Path file) throws IOException {
+        Assert.assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnpackWithFilter() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second", "c.sqc", "third");
+        Unpacker unpacker = new Unpacker();
+        unpacker.setFilter(new RecordFilter(Collections.singletonList("[bc].sqc"), Collections.singletonList("c*")));
+        unpacker.unpackFile(bank);
+        Assert.assertFalse(Files.exists(root.resolve("a.sqc")));
+        assertContent("second", root.resolve("b.sqc"));
+        Assert.assertFalse(Files.exists(root.resolve("c.sqc")));
+        Files.delete(root.resolve("b.sqc"));
+        unpacker.unpackStream(new ByteArrayInputStream(Files.readAllBytes(bank)), root);
+        Assert.assertFalse(Files.exists(root.resolve("a.sqc")));
+        assertContent("second", root.resolve("b.sqc"));
+    }
+
+    @Test
+    public void testUnpackFileInParallel() throws IOException {
+        Path root = folder.getRoot().toPath();
+        String[] namesAndContents = new String[200];
+        for (int i = 0; i < 100; i++) {
+            namesAndContents[2 * i] = "file" + i + ".sqc";
+            namesAndContents[2 * i + 1] = "content" + i;
+        }
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), namesAndContents);
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 4, Collections.singletonList(summary));
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(100, summary.getSqcCount());
+        for (int i = 0; i < 100; i++) {
+            assertContent("content" + i, root.resolve("file" + i + ".sqc"));
+        }
+    }
+
+    @Test
+    public void testUnpackFileIncrementally() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(Collections.singletonList(summary));
+        unpacker.setIncremental(true);
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(2, summary.getSqcCount());
+        Assert.assertTrue(Files.exists(SqcManifest.getFile(bank)));
+
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(2, summary.getSqcCount());
+
+        Files.delete(root.resolve("a.sqc"));
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(3, summary.getSqcCount());
+        assertContent("first", root.resolve("a.sqc"));
+
+        TestBanks.write(bank, "a.sqc", "first", "b.sqc", "changed", "c.sqc", "third");
+        Files.setLastModifiedTime(bank, FileTime.fromMillis(Files.getLastModifiedTime(bank).toMillis() + 2000));
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(5, summary.getSqcCount());
+        assertContent("first", root.resolve("a.sqc"));
+        assertContent("changed", root.resolve("b.sqc"));
+        assertContent("third", root.resolve("c.sqc"));
+    }
+
+    @Test
+    public void testUnpackFileIncrementallyWithoutManifest() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        Files.write(root.resolve("a.sqc"), "first".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("b.sqc"), "SECOND".getBytes(StandardCharsets.UTF_8));
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 2, Collections.singletonList(summary));
+        unpacker.setIncremental(true);
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(1, summary.getSqcCount());
+        assertContent("second", root.resolve("b.sqc"));
+
+        SqcManifest manifest = SqcManifest.read(SqcManifest.getFile(bank));
+        Assert.assertNotNull(manifest);
+        Assert.assertTrue(manifest.matches(Files.size(bank), Files.getLastModifiedTime(bank).toMillis()));
+        Assert.assertEquals(2, manifest.getEntries().size());
+        Assert.assertEquals(6, manifest.get("b.sqc").getSize());
+    }
+
+    @Test
+    public void testManifestKeepsEntriesOfSkippedFiles() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        for (boolean incremental : new boolean[] { true, false }) {
+            Unpacker unpacker = new Unpacker();
+            unpacker.setIncremental(incremental);
+            unpacker.setChecksums(!incremental);
+            unpacker.unpackFile(bank);
+            unpacker.setFilter(record -> record.getName().equals("a.sqc"));
+            unpacker.unpackFile(bank);
+            SqcManifest manifest = SqcManifest.read(SqcManifest.getFile(bank));
+            Assert.assertEquals(2, manifest.getEntries().size());
+            Assert.assertEquals(6, manifest.get("b.sqc").getSize());
+
+            // entries of a changed SQCB file no longer describe the unpacked files
+            Files.setLastModifiedTime(bank, FileTime.fromMillis(Files.getLastModifiedTime(bank).toMillis() + 2000));
+            unpacker.unpackFile(bank);
+            manifest = SqcManifest.read(SqcManifest.getFile(bank));
+            Assert.assertEquals(1, manifest.getEntries().size());
+            Assert.assertNull(manifest.get("b.sqc"));
+        }
+    }
+
+    @Test
+    public void testManifestEscapesNames() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("test.sqcb.manifest");
+        SqcManifest manifest = new SqcManifest(10, 20);
+        manifest.put(new SqcManifest.Entry("line\nfeed\r\n.sqc", 0, 1, "00000000"));
+        manifest.put(new SqcManifest.Entry("back\\slash\\n.sqc", 1, 2, "00000001"));
+        manifest.put(new SqcManifest.Entry("tab\t.sqc", 3, 3, "00000002"));
+        manifest.write(file);
+        Assert.assertEquals(6, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+
+        SqcManifest read = SqcManifest.read(file);
+        Assert.assertEquals(3, read.getEntries().size());
+        Assert.assertEquals(1, read.get("line\nfeed\r\n.sqc").getSize());
+        Assert.assertEquals(2, read.get("back\\slash\\n.sqc").getSize());
+        Assert.assertEquals(3, read.get("tab\t.sqc").getSize());
+
+        Files.write(file, Arrays.asList("# SQCB manifest 2", "size 10", "modified 20",
+                "0\t1\t00000000\t-\tback\\n.sqc"), StandardCharsets.UTF_8);
+        Assert.assertEquals(1, SqcManifest.read(file).get("back\\n.sqc").getSize());
+    }
+
+    @Test
+    public void testUnpackRecordsChecksums() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        for (int buffers : new int[] { 0, 4 }) {
+            Unpacker unpacker = new Unpacker();
+            unpacker.setChecksums(true);
+            unpacker.setSha256(true);
+            unpacker.setPipelineBuffers(buffers);
+            unpacker.unpackFile(bank);
+            assertContent("first", root.resolve("a.sqc"));
+
+            SqcManifest manifest = SqcManifest.read(SqcManifest.getFile(bank));
+            Assert.assertNotNull(manifest);
+            Assert.assertEquals(2, manifest.getEntries().size());
+            SqcManifest.Entry entry = manifest.get("a.sqc");
+            Assert.assertEquals(5, entry.getSize());
+            Assert.assertEquals("a7937b64b8caa58f03721bb6bacf5c78cb235febe0e70b1b84cd99541461a08e", entry.getSha256());
+            Crc32c crc = new Crc32c();
+            crc.update("first".getBytes(StandardCharsets.UTF_8), 0, 5);
+            Assert.assertEquals(String.format("%08x", crc.getValue()), entry.getChecksum());
+        }
+    }
+
+    @Test
+    public void testUnpackThroughPipeline() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            byte[] content = new byte[random.nextInt(5000)];
+            random.nextBytes(content);
+            files.put("file" + i + ".sqc", content);
+        }
+        Path bank = Files.write(root.resolve("test.sqcb"), TestBanks.bank(files));
+        UnpackerSummary summary = new UnpackerSummary();
+        Unpacker unpacker = new Unpacker(256, 2, Collections.singletonList(summary));
+        unpacker.setPipelineBuffers(4);
+        unpacker.unpackStream(Files.newInputStream(bank), root);
+        Assert.assertEquals(20, summary.getSqcCount());
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Assert.assertArrayEquals(file.getValue(), Files.readAllBytes(root.resolve(file.getKey())));
+            Files.delete(root.resolve(file.getKey()));
+        }
+
+        unpacker = new Unpacker(256, Collections.singletonList(summary));
+        unpacker.setPipelineBuffers(3);
+        unpacker.unpackFile(bank);
+        Assert.assertEquals(40, summary.getSqcCount());
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Assert.assertArrayEquals(file.getValue(), Files.readAllBytes(root.resolve(file.getKey())));
+        }
+    }
+
+    @Test
+    public void testUnpackNestedThroughPipeline() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "top.sqc", "top", "sub/dir/x.sqc", "nested");
+        Files.write(root.resolve("top.sqc"), "a longer old content".getBytes(StandardCharsets.UTF_8));
+        Unpacker unpacker = new Unpacker();
+        unpacker.setPipelineBuffers(4);
+        unpacker.unpackFile(bank);
+        assertContent("top", root.resolve("top.sqc"));
+        assertContent("nested", root.resolve("sub/dir/x.sqc"));
+
+        Path dest = root.resolve("stream");
+        unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 2, Collections.emptyList());
+        unpacker.setPipelineBuffers(4);
+        unpacker.unpackStream(Files.newInputStream(bank), dest);
+        assertContent("top", dest.resolve("top.sqc"));
+        assertContent("nested", dest.resolve("sub/dir/x.sqc"));
+    }
+
+    @Test
+    public void testUnpackStreamReusesBuffers() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            files.put("file" + i + ".sqc", new byte[100]);
+        }
+        byte[] bank = TestBanks.bank(files);
+        Unpacker unpacker = new Unpacker();
+        long allocated = 0;
+        for (int run = 0; run < 3; run++) {
+            long start = Allocations.allocatedBytes();
+            unpacker.unpackStream(new ByteArrayInputStream(bank), root);
+            allocated = Allocations.allocatedBytes() - start;
+        }
+        // far less than a buffer of the default size per record
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated / files.size() < 4096);
+    }
+
+    @Test
+    public void testUnpackIntoArchive() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path directory = Files.createDirectories(root.resolve("dir"));
+        TestBanks.write(root.resolve("a.sqcb"), "a.sqc", "first");
+        TestBanks.write(directory.resolve("b.sqcb"), "b.sqc", "second", "c.sqc", "third");
+        Path archive = root.resolve("out.zip");
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 4, Collections.emptyList());
+        try (ArchiveWriter writer = ArchiveWriter.open(archive, root, 2)) {
+            unpacker.setTarget(writer);
+            unpacker.unpackDirectory(root);
+        }
+        Assert.assertFalse(Files.exists(root.resolve("a.sqc")));
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            Assert.assertEquals(3, zip.size());
+            Assert.assertNotNull(zip.getEntry("a.sqc"));
+            Assert.assertNotNull(zip.getEntry("dir/b.sqc"));
+            Assert.assertEquals(5, zip.getEntry("dir/c.sqc").getSize());
+        }
+    }
+
+    @Test
+    public void testUnpackIntoMemory() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path bank = TestBanks.write(root.resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        MemoryTarget target = new MemoryTarget();
+        Unpacker unpacker = new Unpacker(Unpacker.DEFAULT_BUFFER_SIZE, 2, Collections.emptyList());
+        unpacker.setTarget(target);
+        unpacker.unpackFile(bank);
+        unpacker.unpackStream(Files.newInputStream(bank), Paths.get("stream"));
+        Assert.assertFalse(Files.exists(root.resolve("a.sqc")));
+        Assert.assertEquals(4, target.getFiles().size());
+        Assert.assertEquals("first", content(target.get(root.resolve("a.sqc"))));
+        Assert.assertEquals("second", content(target.get(root.resolve("b.sqc"))));
+        Assert.assertEquals("second", content(target.get(Paths.get("stream", "b.sqc"))));
+        Assert.assertTrue(target.get(root.resolve("a.sqc")).isDirect());
+    }
+
+    private static String content(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
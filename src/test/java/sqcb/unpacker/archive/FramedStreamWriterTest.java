@@ -0,0 +1,68 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sqcb.unpacker.SqcFile;
+
+public class FramedStreamWriterTest {
+
+    @Test
+    public void testWrite() throws IOException {
+        Path base = Paths.get("base");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FramedStreamWriter writer = new FramedStreamWriter(bytes, base)) {
+            Assert.assertTrue(writer.isSequential());
+            writer.write(new SqcFile("a.sqc", 0, 5, stream("first")), base.resolve("dir").resolve("a.sqc"));
+            writer.write(new SqcFile("b.sqc", 0, 0, stream("")), base.resolve("b.sqc"));
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertFrame(in, "dir/a.sqc", "first");
+        assertFrame(in, "b.sqc", "");
+        Assert.assertEquals(0, in.readInt());
+        Assert.assertEquals(-1, in.read());
+    }
+
+    private static void assertFrame(DataInputStream in, String name, String content) throws IOException {
+        byte[] nameBytes = new byte[in.readInt()];
+        in.readFully(nameBytes);
+        Assert.assertEquals(name, new String(nameBytes, StandardCharsets.UTF_8));
+        byte[] contentBytes = new byte[(int) in.readLong()];
+        in.readFully(contentBytes);
+        Assert.assertEquals(content, new String(contentBytes, StandardCharsets.UTF_8));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,135 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TarArchiveWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteTar() throws IOException {
+        Path file = write("test.tar", 1);
+        Assert.assertEquals(0, Files.size(file) % 10240);
+        try (InputStream in = Files.newInputStream(file)) {
+            assertEntries(read(in));
+        }
+    }
+
+    @Test
+    public void testWriteTarGz() throws IOException {
+        Path file = write("test.tar.gz", 4);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertEntries(read(in));
+        }
+    }
+
+    private Path write(String name, int threads) throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path file = root.resolve(name);
+        try (ArchiveWriter writer = ArchiveWriter.open(file, root, threads)) {
+            writer.putEntry(root.resolve("a.sqc"), 5, stream("first"));
+            writer.putEntry(root.resolve(longName()), 6, stream("second"));
+            writer.putEntry(root.resolve("dir").resolve(veryLongName()), 5, stream("third"));
+        }
+        return file;
+    }
+
+    private static String longName() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            name.append("directory").append(i).append('/');
+        }
+        return name.append("b.sqc").toString();
+    }
+
+    private static String veryLongName() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            name.append("music_");
+        }
+        return name.append("c.sqc").toString();
+    }
+
+    private static void assertEntries(Map<String, String> entries) {
+        Assert.assertEquals(3, entries.size());
+        Assert.assertEquals("first", entries.get("a.sqc"));
+        Assert.assertEquals("second", entries.get(longName()));
+        Assert.assertEquals("third", entries.get("dir/" + veryLongName()));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Reads the entries of a TAR stream supporting ustar prefixes and pax paths. */
+    private static Map<String, String> read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        Map<String, String> entries = new LinkedHashMap<>();
+        byte[] header = new byte[512];
+        String paxPath = null;
+        while (true) {
+            in.readFully(header);
+            if (header[0] == 0) {
+                return entries;
+            }
+            int size = Integer.parseInt(field(header, 124, 11), 8);
+            byte[] content = new byte[size];
+            in.readFully(content);
+            in.readFully(new byte[(512 - size % 512) % 512]);
+            String data = new String(content, StandardCharsets.UTF_8);
+            if (header[156] == 'x') {
+                paxPath = data.substring(data.indexOf("path=") + 5, data.indexOf('\n'));
+            } else {
+                String prefix = field(header, 345, 155);
+                String name = prefix.isEmpty() ? field(header, 0, 100) : prefix + "/" + field(header, 0, 100);
+                entries.put(paxPath != null ? paxPath : name, data);
+                paxPath = null;
+            }
+        }
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+}
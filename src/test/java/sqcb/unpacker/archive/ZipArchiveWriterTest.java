@@ -0,0 +1,105 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sqcb.unpacker.io.ParallelDeflaterOutputStream;
+
+public class ZipArchiveWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWrite() throws IOException {
+        Path root = folder.getRoot().toPath();
+        byte[] large = new byte[700000];
+        new Random(3).nextBytes(large);
+        Path file = root.resolve("test.zip");
+        try (ArchiveWriter writer = ArchiveWriter.open(file, root, 3)) {
+            Assert.assertTrue(writer instanceof ZipArchiveWriter);
+            writer.putEntry(root.resolve("a.sqc"), 5, new ByteArrayInputStream("first".getBytes("UTF-8")));
+            writer.putEntry(root.resolve("dir").resolve("large.sqc"), large.length, new ByteArrayInputStream(large));
+            writer.putEntry("empty.sqc", 0, new ByteArrayInputStream(new byte[0]));
+        }
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            Assert.assertEquals(3, zip.size());
+            Assert.assertEquals("first", new String(read(zip, "a.sqc"), "UTF-8"));
+            Assert.assertArrayEquals(large, read(zip, "dir/large.sqc"));
+            Assert.assertEquals(0, read(zip, "empty.sqc").length);
+        }
+    }
+
+    @Test
+    public void testMaxCompressedSize() throws IOException {
+        byte[] random = new byte[1000000];
+        new Random(5).nextBytes(random);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ParallelDeflaterOutputStream deflater = new ParallelDeflaterOutputStream(new ByteArrayOutputStream(),
+                    executor, 2);
+            deflater.write(random);
+            deflater.close();
+            Assert.assertTrue(deflater.getBytesOut() > random.length);
+            Assert.assertTrue(deflater.getBytesOut() <= ZipArchiveWriter.maxCompressedSize(random.length));
+        } finally {
+            executor.shutdownNow();
+        }
+        // incompressible entries just below 4 GB grow beyond it
+        Assert.assertTrue(ZipArchiveWriter.maxCompressedSize(0xFFFF0000L - 1) > 0xFFFFFFFFL);
+    }
+
+    @Test(expected = IOException.class)
+    public void testShortContent() throws IOException {
+        try (ArchiveWriter writer = ArchiveWriter.open(folder.getRoot().toPath().resolve("test.zip"),
+                folder.getRoot().toPath(), 1)) {
+            writer.putEntry("a.sqc", 10, new ByteArrayInputStream(new byte[5]));
+        }
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        Assert.assertNotNull(name, entry);
+        byte[] content = new byte[(int) entry.getSize()];
+        try (DataInputStream in = new DataInputStream(zip.getInputStream(entry))) {
+            in.readFully(content);
+            Assert.assertEquals(-1, in.read());
+        }
+        return content;
+    }
+
+}
@@ -0,0 +1,111 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sqcb.unpacker.SqcCatalog;
+import sqcb.unpacker.TestBanks;
+
+public class RecordPrinterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testText() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        String nl = System.lineSeparator();
+        Assert.assertEquals(bank + nl + "  a.sqc\t60\t5" + nl + "  b.sqc\t65\t6" + nl, print(RecordFormat.TEXT));
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a,b.sqc", "first");
+        String nl = System.lineSeparator();
+        Assert.assertEquals("file,name,offset,size" + nl + bank + ",\"a,b.sqc\",44,5" + nl, print(RecordFormat.CSV));
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a\"b.sqc", "first");
+        String json = print(RecordFormat.JSON);
+        Assert.assertTrue(json, json.contains("{\"name\":\"a\\\"b.sqc\",\"offset\":44,\"size\":5}"));
+        Assert.assertTrue(json.startsWith("["));
+        Assert.assertTrue(json.trim().endsWith("]"));
+    }
+
+    @Test
+    public void testDoesNotWriteFiles() throws IOException {
+        TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first");
+        print(RecordFormat.TEXT);
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("a.sqc")));
+    }
+
+    @Test
+    public void testCatalog() throws IOException {
+        Path root = folder.getRoot().toPath().toAbsolutePath();
+        Path first = TestBanks.write(root.resolve("first.sqcb"), "a.sqc", "first", "b.sqc", "second");
+        Path second = TestBanks.write(root.resolve("second.sqcb"), "b.sqc", "third");
+        SqcCatalog catalog = new SqcCatalog();
+        catalog.updateDirectory(root);
+        String nl = System.lineSeparator();
+        long offset = TestBanks.tableLength("b.sqc");
+        Assert.assertEquals("file,name,offset,size" + nl + first + ",b.sqc,65,6" + nl + second + ",b.sqc," + offset
+                + ",5" + nl, printCatalog(catalog));
+        // records of deleted SQCB files are left out
+        Files.delete(first);
+        Assert.assertEquals("file,name,offset,size" + nl + second + ",b.sqc," + offset + ",5" + nl,
+                printCatalog(catalog));
+    }
+
+    private static String printCatalog(SqcCatalog catalog) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes, true, "UTF-8")) {
+            RecordPrinter printer = new RecordPrinter(out, RecordFormat.CSV);
+            printer.printCatalog(catalog, Arrays.asList("b.sqc", "c.sqc"));
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String print(RecordFormat format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes, true, "UTF-8")) {
+            RecordPrinter printer = new RecordPrinter(out, format);
+            printer.printPaths(Collections.singletonList(folder.getRoot().toString()));
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,183 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.cli;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sqcb.unpacker.Durability;
+import sqcb.unpacker.SqcRecord;
+
+public class UnpackerOptionsTest {
+
+    @Test
+    public void testPaths() {
+        UnpackerOptions options = UnpackerOptions.parse("a", "b");
+        Assert.assertEquals(1, options.getThreads());
+        Assert.assertEquals(Arrays.asList("a", "b"), options.getPaths());
+    }
+
+    @Test
+    public void testThreads() {
+        UnpackerOptions options = UnpackerOptions.parse("--threads", "4", "a");
+        Assert.assertEquals(4, options.getThreads());
+        Assert.assertEquals(Runtime.getRuntime().availableProcessors(), UnpackerOptions.parse("-t", "0", "a").getThreads());
+    }
+
+    @Test
+    public void testList() {
+        UnpackerOptions options = UnpackerOptions.parse("--list", "--format", "json", "a");
+        Assert.assertTrue(options.isList());
+        Assert.assertEquals(RecordFormat.JSON, options.getFormat());
+        Assert.assertFalse(UnpackerOptions.parse("a").isList());
+    }
+
+    @Test
+    public void testIncremental() {
+        Assert.assertTrue(UnpackerOptions.parse("--incremental", "a").isIncremental());
+        Assert.assertTrue(UnpackerOptions.parse("-u", "a").isIncremental());
+        Assert.assertFalse(UnpackerOptions.parse("a").isIncremental());
+    }
+
+    @Test
+    public void testLargestFirst() {
+        Assert.assertTrue(UnpackerOptions.parse("--largest-first", "a").isLargestFirst());
+        Assert.assertTrue(UnpackerOptions.parse("-L", "a").isLargestFirst());
+        Assert.assertFalse(UnpackerOptions.parse("a").isLargestFirst());
+    }
+
+    @Test
+    public void testChecksums() {
+        UnpackerOptions options = UnpackerOptions.parse("--checksums", "a");
+        Assert.assertTrue(options.isChecksums());
+        Assert.assertFalse(options.isSha256());
+        options = UnpackerOptions.parse("-H", "a");
+        Assert.assertTrue(options.isChecksums());
+        Assert.assertTrue(options.isSha256());
+        Assert.assertFalse(UnpackerOptions.parse("a").isChecksums());
+        Assert.assertTrue(UnpackerOptions.parse("-v", "a").isVerify());
+        Assert.assertFalse(UnpackerOptions.parse("a").isVerify());
+    }
+
+    @Test
+    public void testValidate() {
+        Assert.assertTrue(UnpackerOptions.parse("--validate", "a").isValidate());
+        Assert.assertTrue(UnpackerOptions.parse("-V", "a").isValidate());
+        Assert.assertFalse(UnpackerOptions.parse("a").isValidate());
+    }
+
+    @Test
+    public void testBuffers() {
+        Assert.assertEquals(64, UnpackerOptions.parse("--buffers", "64", "a").getBuffers());
+        Assert.assertEquals(0, UnpackerOptions.parse("a").getBuffers());
+    }
+
+    @Test
+    public void testDedup() {
+        Assert.assertTrue(UnpackerOptions.parse("--dedup", "a").isDedup());
+        Assert.assertTrue(UnpackerOptions.parse("-d", "a").isDedup());
+        Assert.assertFalse(UnpackerOptions.parse("a").isDedup());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDedupWithArchive() {
+        UnpackerOptions.parse("--dedup", "--archive", "out.zip", "a");
+    }
+
+    @Test
+    public void testSyncAndDirect() {
+        UnpackerOptions options = UnpackerOptions.parse("--sync", "END", "-D", "a");
+        Assert.assertEquals(Durability.END, options.getDurability());
+        Assert.assertTrue(options.isDirectBuffers());
+        options = UnpackerOptions.parse("a");
+        Assert.assertEquals(Durability.NONE, options.getDurability());
+        Assert.assertFalse(options.isDirectBuffers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSyncWithStdout() {
+        UnpackerOptions.parse("-S", "bank", "--stdout", "a");
+    }
+
+    @Test
+    public void testCatalog() {
+        UnpackerOptions options = UnpackerOptions.parse("-C", "music.catalog", "--query", "a.sqc", "-q", "b.sqc");
+        Assert.assertEquals("music.catalog", options.getCatalog());
+        Assert.assertEquals(Arrays.asList("a.sqc", "b.sqc"), options.getQueries());
+        Assert.assertTrue(options.getPaths().isEmpty());
+        Assert.assertNull(UnpackerOptions.parse("a").getCatalog());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueryWithoutCatalog() {
+        UnpackerOptions.parse("--query", "a.sqc", "a");
+    }
+
+    @Test
+    public void testArchive() {
+        UnpackerOptions options = UnpackerOptions.parse("--archive", "out.tar.gz", "-z", "4", "a");
+        Assert.assertEquals("out.tar.gz", options.getArchive());
+        Assert.assertEquals(4, options.getCompressThreads());
+        Assert.assertNull(UnpackerOptions.parse("a").getArchive());
+    }
+
+    @Test
+    public void testStdout() {
+        Assert.assertTrue(UnpackerOptions.parse("--stdout", "a").isStdout());
+        Assert.assertFalse(UnpackerOptions.parse("a").isStdout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStdoutWithArchive() {
+        UnpackerOptions.parse("-s", "-a", "out.zip", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownArchiveFormat() {
+        UnpackerOptions.parse("--archive", "out.rar", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        UnpackerOptions.parse("-t", "x", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownOption() {
+        UnpackerOptions.parse("--unknown", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPaths() {
+        UnpackerOptions.parse("-t", "2");
+    }
+
+    @Test
+    public void testFilter() {
+        UnpackerOptions options = UnpackerOptions.parse("-i", "*.sqc", "--exclude", "b*", "a");
+        Assert.assertTrue(options.getFilter().test(new SqcRecord("a.sqc", 0, 0)));
+        Assert.assertFalse(options.getFilter().test(new SqcRecord("b.sqc", 0, 0)));
+    }
+
+}
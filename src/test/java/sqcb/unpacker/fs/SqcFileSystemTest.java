@@ -0,0 +1,178 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sqcb.unpacker.TestBanks;
+
+public class SqcFileSystemTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadFiles() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "b.sqc",
+                "second");
+        try (FileSystem fileSystem = FileSystems.newFileSystem(bank, (ClassLoader) null)) {
+            Assert.assertTrue(fileSystem instanceof SqcFileSystem);
+            Assert.assertTrue(fileSystem.isReadOnly());
+            Path a = fileSystem.getPath("/a.sqc");
+            Path b = fileSystem.getPath("b.sqc");
+            Assert.assertEquals(5, Files.size(a));
+            Assert.assertEquals(6, Files.size(b));
+            Assert.assertTrue(Files.isRegularFile(b));
+            Assert.assertTrue(Files.isDirectory(fileSystem.getPath("/")));
+            Assert.assertEquals("second", new String(Files.readAllBytes(b), StandardCharsets.UTF_8));
+            try (InputStream stream = Files.newInputStream(a)) {
+                byte[] content = new byte[8];
+                Assert.assertEquals(5, stream.read(content));
+                Assert.assertEquals(-1, stream.read());
+            }
+            try (SeekableByteChannel channel = Files.newByteChannel(b)) {
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                channel.position(3);
+                Assert.assertEquals(3, channel.read(buffer));
+                Assert.assertEquals(-1, channel.read(buffer));
+                Assert.assertEquals("ond", new String(buffer.array(), 0, 3, StandardCharsets.UTF_8));
+                Assert.assertEquals(6, channel.size());
+            }
+            Assert.assertFalse(Files.exists(fileSystem.getPath("/c.sqc")));
+        }
+    }
+
+    @Test
+    public void testListDirectories() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first", "battle/b.sqc",
+                "second", "battle/c.sqc", "third");
+        try (FileSystem fileSystem = FileSystems.newFileSystem(bank, (ClassLoader) null)) {
+            Assert.assertEquals(Arrays.asList("/a.sqc", "/battle"), list(fileSystem.getPath("/")));
+            Assert.assertEquals(Arrays.asList("/battle/b.sqc", "/battle/c.sqc"), list(fileSystem.getPath("/battle")));
+            Assert.assertTrue(Files.isDirectory(fileSystem.getPath("/battle")));
+            Assert.assertEquals("third",
+                    new String(Files.readAllBytes(fileSystem.getPath("/battle/x/../c.sqc")), StandardCharsets.UTF_8));
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileSystem.getPath("/battle"), "*b.sqc")) {
+                Assert.assertEquals("/battle/b.sqc", stream.iterator().next().toString());
+            }
+        }
+    }
+
+    @Test
+    public void testUri() throws IOException {
+        Path bank = TestBanks.write(folder.newFolder("with space").toPath().resolve("test.sqcb"), "a.sqc", "first");
+        URI uri = URI.create("sqcb:" + bank.toUri());
+        try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+            Path a = fileSystem.getPath("a.sqc");
+            Assert.assertSame(fileSystem, FileSystems.getFileSystem(uri));
+            Assert.assertEquals(a.toAbsolutePath(), Paths.get(a.toUri()));
+            Assert.assertEquals(5, Files.size(Paths.get(a.toUri())));
+        }
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("with space").resolve("a.sqc")));
+    }
+
+    @Test
+    public void testPaths() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first");
+        try (FileSystem fileSystem = FileSystems.newFileSystem(bank, (ClassLoader) null)) {
+            Path path = fileSystem.getPath("/music", "battle", "a.sqc");
+            Assert.assertEquals("/music/battle/a.sqc", path.toString());
+            Assert.assertEquals(3, path.getNameCount());
+            Assert.assertEquals("a.sqc", path.getFileName().toString());
+            Assert.assertEquals("/music/battle", path.getParent().toString());
+            Assert.assertEquals("/", path.getRoot().toString());
+            Assert.assertEquals("battle/a.sqc", path.subpath(1, 3).toString());
+            Assert.assertTrue(path.startsWith("/music"));
+            Assert.assertTrue(path.endsWith("battle/a.sqc"));
+            Assert.assertFalse(path.startsWith("music"));
+            Assert.assertEquals("../ambient/b.sqc",
+                    path.getParent().relativize(fileSystem.getPath("/music/ambient/b.sqc")).toString());
+            Assert.assertEquals("/music/b.sqc", path.resolveSibling("../b.sqc").normalize().toString());
+            Assert.assertTrue(fileSystem.getPathMatcher("glob:*.sqc").matches(path.getFileName()));
+            Assert.assertFalse(fileSystem.getPathMatcher("glob:*.sqc").matches(path));
+            Assert.assertFalse(fileSystem.getPathMatcher("glob:/music/*.sqc").matches(path));
+            Assert.assertTrue(fileSystem.getPathMatcher("glob:/music/*/?.sqc").matches(path));
+            Assert.assertTrue(fileSystem.getPathMatcher("glob:/**.sqc").matches(path));
+            Assert.assertTrue(fileSystem.getPathMatcher("regex:.*/a\\.sqc").matches(path));
+        }
+    }
+
+    @Test
+    public void testReadOnly() throws IOException {
+        Path bank = TestBanks.write(folder.getRoot().toPath().resolve("test.sqcb"), "a.sqc", "first");
+        try (FileSystem fileSystem = FileSystems.newFileSystem(bank, (ClassLoader) null)) {
+            Path a = fileSystem.getPath("/a.sqc");
+            try {
+                Files.write(a, new byte[1]);
+                Assert.fail();
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            try {
+                Files.delete(a);
+                Assert.fail();
+            } catch (ReadOnlyFileSystemException e) {
+                // expected
+            }
+            Assert.assertFalse(Files.isWritable(a));
+            try {
+                Files.newInputStream(fileSystem.getPath("/b.sqc"));
+                Assert.fail();
+            } catch (NoSuchFileException e) {
+                // expected
+            }
+        }
+    }
+
+    private static List<String> list(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                names.add(path.toString());
+            }
+        }
+        return names;
+    }
+
+}
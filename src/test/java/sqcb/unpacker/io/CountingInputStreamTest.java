@@ -59,4 +59,15 @@ public class CountingInputStreamTest {
         }
     }
 
+    @Test
+    public void testSkip() throws IOException {
+        InputStream stream = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+        try (CountingInputStream countingStream = new CountingInputStream(stream)) {
+            Assert.assertEquals(2, countingStream.skip(2));
+            Assert.assertEquals(2, countingStream.getBytesRead());
+            Assert.assertEquals(3, countingStream.read());
+            Assert.assertEquals(3, countingStream.getBytesRead());
+        }
+    }
+
 }
@@ -0,0 +1,85 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Crc32cTest {
+
+    @Test
+    public void testKnownValues() {
+        Assert.assertEquals(0L, crc(new byte[0]));
+        Assert.assertEquals(0xE3069283L, crc("123456789".getBytes(StandardCharsets.US_ASCII)));
+        // test vectors of RFC 3720
+        Assert.assertEquals(0x8A9136AAL, crc(new byte[32]));
+        byte[] ones = new byte[32];
+        Arrays.fill(ones, (byte) 0xFF);
+        Assert.assertEquals(0x62A8AB43L, crc(ones));
+    }
+
+    @Test
+    public void testUpdateVariants() {
+        byte[] data = new byte[1003];
+        new Random(42).nextBytes(data);
+        Crc32c bytewise = new Crc32c();
+        for (byte b : data) {
+            bytewise.update(b);
+        }
+        long expected = bytewise.getValue();
+        Assert.assertEquals(expected, crc(data));
+
+        Crc32c split = new Crc32c();
+        split.update(data, 0, 5);
+        split.update(data, 5, 700);
+        split.update(data, 705, data.length - 705);
+        Assert.assertEquals(expected, split.getValue());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        Crc32c buffered = new Crc32c();
+        buffered.update(direct);
+        Assert.assertEquals(expected, buffered.getValue());
+        Assert.assertFalse(direct.hasRemaining());
+
+        ByteBuffer heap = ByteBuffer.wrap(data, 3, data.length - 3).slice();
+        Crc32c sliced = new Crc32c();
+        sliced.update(data, 0, 3);
+        sliced.update(heap);
+        Assert.assertEquals(expected, sliced.getValue());
+
+        sliced.reset();
+        Assert.assertEquals(0L, sliced.getValue());
+    }
+
+    private static long crc(byte[] data) {
+        Crc32c crc = new Crc32c();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+}
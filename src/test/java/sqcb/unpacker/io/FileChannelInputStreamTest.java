@@ -0,0 +1,137 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileChannelInputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadByte() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4 });
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 1, 2)) {
+            Assert.assertEquals(2, stream.read());
+            Assert.assertEquals(3, stream.read());
+            Assert.assertEquals(-1, stream.read());
+            Assert.assertEquals(0, channel.position());
+        }
+    }
+
+    @Test
+    public void testReadBytes() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4, 5 });
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 1, 3)) {
+            byte[] buffer = new byte[2];
+            Assert.assertEquals(2, stream.read(buffer));
+            Assert.assertArrayEquals(new byte[] { 2, 3 }, buffer);
+            Assert.assertEquals(1, stream.read(buffer));
+            Assert.assertEquals(4, buffer[0]);
+            Assert.assertEquals(-1, stream.read(buffer));
+        }
+    }
+
+    @Test
+    public void testMarkAndReset() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4, 5 });
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 1, 3)) {
+            Assert.assertTrue(stream.markSupported());
+            Assert.assertEquals(2, stream.read());
+            stream.mark(0);
+            Assert.assertEquals(3, stream.read());
+            Assert.assertEquals(4, stream.read());
+            Assert.assertEquals(-1, stream.read());
+            stream.reset();
+            Assert.assertEquals(2, stream.getRemaining());
+            Assert.assertEquals(3, stream.read());
+        }
+    }
+
+    @Test
+    public void testReadByteBuffer() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4, 5 });
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 1, 3)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+            Assert.assertEquals(3, stream.read(buffer));
+            Assert.assertEquals(8, buffer.limit());
+            buffer.flip();
+            Assert.assertEquals(2, buffer.get());
+            Assert.assertEquals(3, buffer.get());
+            Assert.assertEquals(4, buffer.get());
+            Assert.assertEquals(-1, stream.read(buffer));
+        }
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4, 5 });
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 1, 3)) {
+            Assert.assertEquals(2, stream.skip(2));
+            Assert.assertEquals(1, stream.getRemaining());
+            Assert.assertEquals(4, stream.read());
+            Assert.assertEquals(0, stream.skip(2));
+        }
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4, 5 });
+        Path target = folder.getRoot().toPath().resolve("target");
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 1, 3)) {
+            Assert.assertEquals(3, stream.transferTo(out));
+            Assert.assertEquals(-1, stream.read());
+        }
+        Assert.assertArrayEquals(new byte[] { 2, 3, 4 }, Files.readAllBytes(target));
+    }
+
+    @Test(timeout = 10000)
+    public void testTransferToPastEndOfFile() throws IOException {
+        Path file = Files.write(folder.getRoot().toPath().resolve("test"), new byte[] { 1, 2, 3, 4, 5 });
+        Path target = folder.getRoot().toPath().resolve("target");
+        try (FileChannel channel = FileChannel.open(file);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileChannelInputStream stream = new FileChannelInputStream(channel, 3, 10)) {
+            Assert.assertEquals(2, stream.transferTo(out));
+        }
+        Assert.assertArrayEquals(new byte[] { 4, 5 }, Files.readAllBytes(target));
+    }
+
+}
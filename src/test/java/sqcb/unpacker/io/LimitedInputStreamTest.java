@@ -73,4 +73,29 @@ public class LimitedInputStreamTest {
         }
     }
 
+    @Test
+    public void testSkip() throws IOException {
+        InputStream stream = new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 });
+        try (LimitedInputStream limitedStream = new LimitedInputStream(stream, 3)) {
+            Assert.assertEquals(2, limitedStream.skip(2));
+            Assert.assertEquals(1, limitedStream.skip(2));
+            Assert.assertEquals(0, limitedStream.skip(2));
+            Assert.assertEquals(-1, limitedStream.read());
+            Assert.assertEquals(4, stream.read());
+        }
+    }
+
+    @Test
+    public void testSkipRemaining() throws IOException {
+        InputStream stream = new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 });
+        try (LimitedInputStream limitedStream = new LimitedInputStream(stream, 3)) {
+            Assert.assertEquals(1, limitedStream.read());
+            Assert.assertTrue(limitedStream.skipRemaining());
+            Assert.assertEquals(4, stream.read());
+        }
+        try (LimitedInputStream limitedStream = new LimitedInputStream(new ByteArrayInputStream(new byte[2]), 3)) {
+            Assert.assertFalse(limitedStream.skipRemaining());
+        }
+    }
+
 }
@@ -0,0 +1,86 @@
+/* ******************************************************************************
+Copyright 2020 Peshek of Rattay
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+****************************************************************************** */
+package sqcb.unpacker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelDeflaterOutputStreamTest {
+
+    @Test
+    public void testCompressInCallingThread() throws IOException, DataFormatException {
+        assertRoundTrip(null, 1);
+    }
+
+    @Test
+    public void testCompressInParallel() throws IOException, DataFormatException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertRoundTrip(executor, 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertRoundTrip(ExecutorService executor, int threads)
+            throws IOException, DataFormatException {
+        byte[] data = new byte[1000000];
+        Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 1000 < 500 ? random.nextInt(4) : i);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelDeflaterOutputStream out = new ParallelDeflaterOutputStream(compressed, executor, threads, 6,
+                64 * 1024);
+        out.write(data, 0, 12345);
+        out.write(data, 12345, data.length - 12345);
+        out.close();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        Assert.assertEquals(crc.getValue(), out.getCrc());
+        Assert.assertEquals(data.length, out.getBytesIn());
+        Assert.assertEquals(compressed.size(), out.getBytesOut());
+
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed.toByteArray());
+        byte[] inflated = new byte[data.length + 1];
+        int length = 0;
+        while (!inflater.finished()) {
+            length += inflater.inflate(inflated, length, inflated.length - length);
+        }
+        inflater.end();
+        Assert.assertEquals(data.length, length);
+        for (int i = 0; i < data.length; i++) {
+            Assert.assertEquals(data[i], inflated[i]);
+        }
+    }
+
+}